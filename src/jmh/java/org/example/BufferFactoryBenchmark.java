@@ -0,0 +1,78 @@
+package org.example;
+
+import org.geotools.api.referencing.FactoryException;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.util.AffineTransformation;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of BufferFactory.buffer against JTS Geometry.buffer on fixed-seed data in projected units.
+ *
+ * Build and run with:
+ *   mvn -P jmh package
+ *   java -jar target/benchmarks.jar BufferFactoryBenchmark -prof gc
+ *
+ * The gc profiler reports allocation per operation. Each trial prints its area error once: the absolute
+ * area difference against Geometry.buffer with the same number of segments per circle, in parts per million.
+ * The JTS case is timed with that segment count as well. Points ignore vertexCount.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BufferFactoryBenchmark {
+    private static final long SEED = 42L;
+    // generated coordinates are degrees, read them as kilometres so the distances below are metres
+    private static final double METRES_PER_UNIT = 1000;
+
+    @Param({"POINT", "LINE", "POLYGON"})
+    public String geometryType;
+
+    @Param({"16", "128", "1024"})
+    public int vertexCount;
+
+    @Param({"100", "1000", "10000"})
+    public double distance;
+
+    @Param({"SEGMENT_UNION", "OFFSET_CURVE", "JTS"})
+    public String engine;
+
+    private Geometry geometry;
+    private BufferEngine bufferEngine;
+    private int quadrantSegments;
+
+    @Setup(Level.Trial)
+    public void setUp() throws FactoryException {
+        RandomDataGenerator generator = new RandomDataGenerator(SEED);
+        Geometry generated;
+        switch (geometryType) {
+            case "POINT":
+                generated = (Geometry) generator.createPointFeature().getDefaultGeometry();
+                break;
+            case "LINE":
+                generated = generator.createRandomLineString(vertexCount);
+                break;
+            case "POLYGON":
+                generated = generator.createRandomPolygon(vertexCount);
+                break;
+            default:
+                throw new IllegalArgumentException(geometryType);
+        }
+        geometry = AffineTransformation.scaleInstance(METRES_PER_UNIT, METRES_PER_UNIT).transform(generated);
+        bufferEngine = "JTS".equals(engine) ? null : BufferEngine.valueOf(engine);
+        quadrantSegments = BufferFactory.circleSegments(distance) / 4;
+
+        double expected = geometry.buffer(distance, quadrantSegments).getArea();
+        double areaErrorPpm = 1e6 * Math.abs(buffer().getArea() - expected) / expected;
+        System.out.printf("%nArea error of %s %s/%d at %.0f m: %.1f ppm%n", engine, geometryType, vertexCount, distance, areaErrorPpm);
+    }
+
+    @Benchmark
+    public Geometry buffer() {
+        return bufferEngine == null ? geometry.buffer(distance, quadrantSegments) : BufferFactory.buffer(geometry, distance, bufferEngine);
+    }
+}
@@ -0,0 +1,239 @@
+package org.example;
+
+import org.geotools.api.data.FileDataStore;
+import org.geotools.api.data.FileDataStoreFinder;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.filter.expression.Expression;
+import org.geotools.api.filter.expression.Literal;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.collection.DecoratingSimpleFeatureCollection;
+import org.geotools.feature.collection.DecoratingSimpleFeatureIterator;
+import org.geotools.filter.text.cql2.CQLException;
+import org.geotools.filter.text.ecql.ECQL;
+import org.locationtech.jts.geom.Geometry;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless batch mode: reads a shapefile, streams its features through the buffer step and writes the
+ * buffered features into a new shapefile, then prints throughput and peak heap usage.
+ *
+ * <pre>
+ * java org.example.Main --input in.shp --output out.shp --distance 500 [--threads 8] [--metrics json]
+ * </pre>
+ *
+ * The distance may also be an ECQL expression evaluated per feature, e.g. {@code --distance "setback * 2"}.
+ *
+ * With {@code --dissolve [attribute]} the buffered features are merged with {@link BufferDissolver} into one
+ * feature, or one per value of the attribute, before writing. Dissolving holds every buffered geometry in memory.
+ *
+ * With {@code --direct} the geometries are read from a memory mapping of the .shp file and the attributes
+ * are joined back from the .dbf file when writing, see {@link ShapefileBufferJob}.
+ */
+public class BatchRunner {
+
+    public static int run(String[] args) {
+        File input = null;
+        File output = null;
+        Expression distance = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int batchSize = ParallelBufferer.DEFAULT_BATCH_SIZE;
+        String metrics = null;
+        boolean direct = false;
+        boolean dissolve = false;
+        String dissolveAttribute = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (option.equals("--direct")) {
+                    direct = true;
+                    continue;
+                }
+                if (option.equals("--dissolve")) {
+                    dissolve = true;
+                    if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                        dissolveAttribute = args[++i];
+                    }
+                    continue;
+                }
+                if (i + 1 >= args.length) throw new IllegalArgumentException("missing value for " + option);
+                String value = args[++i];
+                switch (option) {
+                    case "--input": input = new File(value); break;
+                    case "--output": output = new File(value); break;
+                    case "--distance": distance = parseDistance(value); break;
+                    case "--threads": threads = Integer.parseInt(value); break;
+                    case "--batch": batchSize = Integer.parseInt(value); break;
+                    case "--metrics": metrics = value; break;
+                    default: throw new IllegalArgumentException("unknown option " + option);
+                }
+            }
+            if (input == null || output == null || distance == null) {
+                throw new IllegalArgumentException("--input, --output and --distance are required");
+            }
+            if (threads < 1 || batchSize < 1) {
+                throw new IllegalArgumentException("--threads and --batch must be positive");
+            }
+            if (direct && !(distance instanceof Literal)) {
+                throw new IllegalArgumentException("--direct needs a constant --distance");
+            }
+            if (direct && dissolve) {
+                throw new IllegalArgumentException("--direct and --dissolve cannot be combined");
+            }
+            if (metrics != null && !metrics.equals("text") && !metrics.equals("json")) {
+                throw new IllegalArgumentException("--metrics must be text or json");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            return 2;
+        }
+
+        BufferMetricsRecorder recorder = metrics == null ? null : new BufferMetricsRecorder();
+        BufferFactory.setMetrics(recorder);
+        try {
+            if (direct) {
+                return runDirect(input, output, distance.evaluate(null, Double.class), threads, batchSize);
+            }
+            return run(input, output, distance, threads, batchSize, dissolve, dissolveAttribute);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return 2;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 1;
+        } finally {
+            BufferFactory.setMetrics(null);
+            if (recorder != null) {
+                System.out.println(metrics.equals("json") ? recorder.toJson() : recorder.toText());
+            }
+        }
+    }
+
+    public static int run(File input, File output, double distance, int threads, int batchSize) throws IOException {
+        return run(input, output, CommonFactoryFinder.getFilterFactory().literal(distance), threads, batchSize);
+    }
+
+    public static int run(File input, File output, Expression distance, int threads, int batchSize) throws IOException {
+        return run(input, output, distance, threads, batchSize, false, null);
+    }
+
+    // With dissolve the buffered features are merged into one feature per value of dissolveAttribute,
+    // or into a single feature when it is null
+    public static int run(File input, File output, Expression distance, int threads, int batchSize,
+                          boolean dissolve, String dissolveAttribute) throws IOException {
+        FileDataStore store = FileDataStoreFinder.getDataStore(input);
+        if (store == null) {
+            throw new IOException("no data store found for " + input);
+        }
+        try (ParallelBufferer bufferer = new ParallelBufferer(threads, batchSize)) {
+            CountingCollection source = new CountingCollection(store.getFeatureSource().getFeatures());
+            BufferedFeatureCollection buffered = new BufferedFeatureCollection(source, distance, bufferer);
+            if (dissolveAttribute != null && buffered.getSchema().getDescriptor(dissolveAttribute) == null) {
+                throw new IllegalArgumentException("no attribute " + dissolveAttribute + " in " + input);
+            }
+
+            long start = System.nanoTime();
+            SimpleFeatureCollection result = buffered;
+            if (dissolve) {
+                try (BufferDissolver dissolver = new BufferDissolver(threads)) {
+                    result = dissolver.dissolve(buffered, dissolveAttribute);
+                }
+            }
+            long written = Main.exportToShapefile(result, result.getSchema(), output);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            for (ParallelBufferer.Failure failure : buffered.getFailures()) {
+                System.err.println("Failed to buffer " + failure.feature.getID() + ": " + failure.exception);
+            }
+            System.out.printf("features: %d written, %d failed%n", written, buffered.getFailures().size());
+            System.out.printf("time: %.3f s%n", seconds);
+            System.out.printf("throughput: %.1f features/s, %.1f vertices/s%n",
+                    source.features.sum() / seconds, source.vertices.sum() / seconds);
+            System.out.printf("peak heap: %.1f MB%n", peakHeapUsage() / (1024.0 * 1024.0));
+            return buffered.getFailures().isEmpty() ? 0 : 1;
+        } finally {
+            store.dispose();
+        }
+    }
+
+    public static int runDirect(File input, File output, double distance, int threads, int batchSize) throws IOException {
+        long start = System.nanoTime();
+        ShapefileBufferJob.Result result = ShapefileBufferJob.run(input, output, distance, threads, batchSize);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        for (ShapefileBufferJob.Failure failure : result.failures) {
+            System.err.println("Failed to buffer record " + failure.record + ": " + failure.exception);
+        }
+        System.out.printf("features: %d written, %d failed%n", result.written, result.failures.size());
+        System.out.printf("time: %.3f s%n", seconds);
+        System.out.printf("throughput: %.1f features/s, %.1f vertices/s%n",
+                (result.written + result.failures.size()) / seconds, result.vertices / seconds);
+        System.out.printf("peak heap: %.1f MB%n", peakHeapUsage() / (1024.0 * 1024.0));
+        return result.failures.isEmpty() ? 0 : 1;
+    }
+
+    // a number, or an ECQL expression such as an attribute name
+    private static Expression parseDistance(String value) {
+        try {
+            return CommonFactoryFinder.getFilterFactory().literal(Double.parseDouble(value));
+        } catch (NumberFormatException notANumber) {
+            try {
+                return ECQL.toExpression(value);
+            } catch (CQLException e) {
+                throw new IllegalArgumentException("invalid distance expression " + value + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // sum of the peak usage of every heap pool, an upper bound of the actual peak heap
+    private static long peakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static void printUsage() {
+        System.err.println("usage: --input <file.shp> --output <file.shp> --distance <metres or ECQL expression>"
+                + " [--threads <n>] [--batch <features per parallel batch>]"
+                + " [--metrics text|json] [--direct] [--dissolve [attribute]]");
+    }
+
+    // counts the source features and vertices as the buffer step reads them
+    private static class CountingCollection extends DecoratingSimpleFeatureCollection {
+        final LongAdder features = new LongAdder();
+        final LongAdder vertices = new LongAdder();
+
+        CountingCollection(SimpleFeatureCollection delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public SimpleFeatureIterator features() {
+            return new DecoratingSimpleFeatureIterator(delegate.features()) {
+                @Override
+                public SimpleFeature next() {
+                    SimpleFeature feature = super.next();
+                    features.increment();
+                    Object geometry = feature.getDefaultGeometry();
+                    if (geometry instanceof Geometry) {
+                        vertices.add(((Geometry) geometry).getNumPoints());
+                    }
+                    return feature;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package org.example;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.locationtech.jts.geom.*;
+import org.locationtech.jts.operation.overlayng.CoverageUnion;
+import org.locationtech.jts.operation.overlayng.OverlayNG;
+import org.locationtech.jts.operation.overlayng.OverlayNGRobust;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Merges buffered features into one dissolved coverage. Geometries are bucketed into a regular grid by
+ * the centre of their envelope and every cell is unioned on its own in parallel. The part of a cell union
+ * that no geometry of another cell can reach is final; only the remaining strips along the cell borders are
+ * overlaid with each other, and the result is stitched to the cell cores with a coverage union.
+ */
+public class BufferDissolver implements AutoCloseable {
+    public static final int DEFAULT_GEOMETRIES_PER_CELL = 256;
+
+    private final ForkJoinPool pool;
+    private final int geometriesPerCell;
+
+    public BufferDissolver(int threads) {
+        this(threads, DEFAULT_GEOMETRIES_PER_CELL);
+    }
+
+    public BufferDissolver(int threads, int geometriesPerCell) {
+        if (geometriesPerCell < 1) throw new IllegalArgumentException("geometriesPerCell must be positive");
+        this.pool = new ForkJoinPool(threads);
+        this.geometriesPerCell = geometriesPerCell;
+    }
+
+    public MultiPolygon dissolve(List<Geometry> geometries, GeometryFactory factory) {
+        List<Geometry> polygonal = new ArrayList<>(geometries.size());
+        Envelope extent = new Envelope();
+        double reachX = 0, reachY = 0;
+        for (Geometry geometry : geometries) {
+            if (geometry == null || geometry.isEmpty()) continue;
+            polygonal.add(geometry);
+            Envelope envelope = geometry.getEnvelopeInternal();
+            extent.expandToInclude(envelope);
+            reachX = Math.max(reachX, envelope.getWidth() / 2);
+            reachY = Math.max(reachY, envelope.getHeight() / 2);
+        }
+        if (polygonal.isEmpty()) return factory.createMultiPolygon();
+
+        int side = (int) Math.max(1, Math.ceil(Math.sqrt((double) polygonal.size() / geometriesPerCell)));
+        List<List<Geometry>> cells = new ArrayList<>(side * side);
+        for (int i = 0; i < side * side; i++) {
+            cells.add(new ArrayList<>());
+        }
+        for (Geometry geometry : polygonal) {
+            Coordinate centre = geometry.getEnvelopeInternal().centre();
+            cells.get(cell(centre.y, extent.getMinY(), extent.getHeight(), side) * side
+                    + cell(centre.x, extent.getMinX(), extent.getWidth(), side)).add(geometry);
+        }
+
+        // A geometry reaches at most half its envelope beyond the cell of its centre, so the core of a cell,
+        // shrunk by that reach, is only covered by the cell's own geometries and its union there is final
+        double width = extent.getWidth() / side, height = extent.getHeight() / side;
+        double gapX = reachX * 1.01, gapY = reachY * 1.01;
+        List<Geometry[]> split = pool.submit(() -> IntStream.range(0, cells.size())
+                .parallel()
+                .filter(i -> !cells.get(i).isEmpty())
+                .mapToObj(i -> {
+                    double minX = extent.getMinX() + (i % side) * width, minY = extent.getMinY() + (i / side) * height;
+                    Envelope core = new Envelope(minX + gapX, minX + width - gapX, minY + gapY, minY + height - gapY);
+                    return splitCore(factory.buildGeometry(cells.get(i)).union(), core, factory);
+                })
+                .collect(Collectors.toList())).join();
+
+        List<Geometry> cores = new ArrayList<>();
+        List<Geometry> seams = new ArrayList<>();
+        for (Geometry[] parts : split) {
+            if (parts[0] != null && !parts[0].isEmpty()) cores.add(parts[0]);
+            if (!parts[1].isEmpty()) seams.add(parts[1]);
+        }
+        if (cores.isEmpty()) {
+            return toMultiPolygon(Collections.singletonList(OverlayNGRobust.union(seams)), factory);
+        }
+
+        // only the seam strips are overlaid; they share their edges along the core borders exactly with the
+        // cores, so putting both together is a coverage union
+        List<Geometry> coverage = new ArrayList<>(cores);
+        coverage.add(OverlayNGRobust.union(seams, factory));
+        try {
+            return toMultiPolygon(Collections.singletonList(CoverageUnion.union(factory.buildGeometry(coverage))), factory);
+        } catch (TopologyException e) {
+            return toMultiPolygon(Collections.singletonList(OverlayNGRobust.union(coverage, factory)), factory);
+        }
+    }
+
+    // The union inside the core and the rest of it. Both come from the same noding of the union against the
+    // core rectangle, so their shared edges match exactly; if that overlay fails the whole union is seam.
+    private static Geometry[] splitCore(Geometry union, Envelope core, GeometryFactory factory) {
+        if (core.isNull()) return new Geometry[]{null, union};
+        Geometry rectangle = factory.toGeometry(core);
+        try {
+            return new Geometry[]{
+                    OverlayNG.overlay(union, rectangle, OverlayNG.INTERSECTION),
+                    OverlayNG.overlay(union, rectangle, OverlayNG.DIFFERENCE)
+            };
+        } catch (TopologyException e) {
+            return new Geometry[]{null, union};
+        }
+    }
+
+    // Dissolves all features into one MultiPolygon feature per distinct value of groupAttribute,
+    // or into a single feature when groupAttribute is null
+    public SimpleFeatureCollection dissolve(SimpleFeatureCollection features, String groupAttribute) {
+        SimpleFeatureType schema = features.getSchema();
+        Map<Object, List<Geometry>> groups = new LinkedHashMap<>();
+        GeometryFactory factory = null;
+
+        SimpleFeatureIterator iterator = features.features();
+        try {
+            while (iterator.hasNext()) {
+                SimpleFeature feature = iterator.next();
+                Geometry geometry = (Geometry) feature.getDefaultGeometry();
+                if (geometry == null) continue;
+                if (factory == null) factory = geometry.getFactory();
+                Object key = groupAttribute == null ? null : feature.getAttribute(groupAttribute);
+                groups.computeIfAbsent(key, k -> new ArrayList<>()).add(geometry);
+            }
+        } finally {
+            iterator.close();
+        }
+        if (factory == null) factory = new GeometryFactory();
+
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName(schema.getName());
+        typeBuilder.setCRS(schema.getCoordinateReferenceSystem());
+        typeBuilder.add("the_geom", MultiPolygon.class);
+        if (groupAttribute != null) {
+            typeBuilder.add(schema.getDescriptor(groupAttribute));
+        }
+        SimpleFeatureType dissolvedSchema = typeBuilder.buildFeatureType();
+
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(dissolvedSchema);
+        List<SimpleFeature> dissolved = new ArrayList<>(groups.size());
+        for (Map.Entry<Object, List<Geometry>> group : groups.entrySet()) {
+            builder.add(dissolve(group.getValue(), factory));
+            if (groupAttribute != null) {
+                builder.add(group.getKey());
+            }
+            dissolved.add(builder.buildFeature(null));
+        }
+        return new ListFeatureCollection(dissolvedSchema, dissolved);
+    }
+
+    private static int cell(double value, double min, double size, int side) {
+        if (size <= 0) return 0;
+        return Math.min(side - 1, (int) ((value - min) / size * side));
+    }
+
+    private static MultiPolygon toMultiPolygon(List<Geometry> geometries, GeometryFactory factory) {
+        List<Polygon> polygons = new ArrayList<>();
+        for (Geometry geometry : geometries) {
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                Geometry part = geometry.getGeometryN(i);
+                if (part instanceof Polygon && !part.isEmpty()) {
+                    polygons.add((Polygon) part);
+                }
+            }
+        }
+        return factory.createMultiPolygon(polygons.toArray(new Polygon[0]));
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
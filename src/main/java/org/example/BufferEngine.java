@@ -0,0 +1,8 @@
+package org.example;
+
+public enum BufferEngine {
+    // one rectangle per segment and one circle per vertex, merged by overlay
+    SEGMENT_UNION,
+    // one raw offset curve per line or shell, only its self-intersections are resolved
+    OFFSET_CURVE
+}
@@ -6,6 +6,7 @@ import org.geotools.api.feature.simple.SimpleFeatureType;
 import org.geotools.api.feature.type.AttributeDescriptor;
 import org.geotools.api.feature.type.AttributeType;
 import org.geotools.api.feature.type.GeometryType;
+import org.geotools.api.filter.expression.Expression;
 import org.geotools.api.referencing.FactoryException;
 import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
 import org.geotools.api.referencing.operation.MathTransform;
@@ -15,199 +16,600 @@ import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.geometry.jts.JTS;
-import org.geotools.referencing.CRS;
-import org.geotools.referencing.crs.DefaultGeographicCRS;
-import org.locationtech.jts.algorithm.Angle;
 import org.locationtech.jts.geom.*;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 public class BufferFactory {
+    static final int CIRCLE_SEGMENTS = 16;
+
+    private static volatile UnionMode unionMode = UnionMode.SEQUENTIAL_TREE;
+    private static volatile BufferEngine engine = BufferEngine.SEGMENT_UNION;
+    private static volatile double maxChordError = 0;
+    private static volatile double simplifyRatio = 0;
+    private static volatile double planarLimit = 0;
+    private static volatile int parallelThreshold = 10_000;
+    private static volatile SnapMode snapMode = SnapMode.OFF;
+    // a millimetre grid in the projected metres
+    private static volatile PrecisionModel snapPrecision = new PrecisionModel(1000);
+    private static final AtomicLong snappedFeatures = new AtomicLong();
+
+    public static UnionMode getUnionMode() {
+        return unionMode;
+    }
 
-    private static Coordinate[] createCircleCoordinates(Coordinate center, double radius, int outerNumCoords) {
-        Coordinate[] coords = new Coordinate[outerNumCoords + 1];
-        double angleIncrement = 2 * Math.PI / outerNumCoords;
+    public static void setUnionMode(UnionMode mode) {
+        unionMode = mode;
+    }
 
-        for (int i = 0; i < outerNumCoords; i++) {
-            double angle = angleIncrement * i;
-            double x = center.x + radius * Math.cos(angle);
-            double y = center.y + radius * Math.sin(angle);
-            coords[i] = new Coordinate(x, y);
-        }
-        coords[outerNumCoords] = new Coordinate(coords[0].x, coords[0].y);
+    public static BufferEngine getEngine() {
+        return engine;
+    }
+
+    public static void setEngine(BufferEngine bufferEngine) {
+        engine = bufferEngine;
+    }
+
+    public static double getMaxChordError() {
+        return maxChordError;
+    }
+
+    // Maximum distance, in projected units, between a circle and its polygon approximation.
+    // The segment count then follows the buffer distance; 0 keeps the fixed CIRCLE_SEGMENTS.
+    public static void setMaxChordError(double error) {
+        maxChordError = error;
+    }
+
+    public static double getSimplifyRatio() {
+        return simplifyRatio;
+    }
 
-        return coords;
+    // Simplifies projected inputs with a Douglas-Peucker tolerance of ratio * distance before buffering.
+    // The simplification moves the buffer by at most that tolerance (Hausdorff distance), on top of the chord
+    // error of the circle approximation, e.g. 0.01 keeps a 1 km buffer within 10 m; 0 disables it.
+    public static void setSimplifyRatio(double ratio) {
+        if (ratio < 0) throw new IllegalArgumentException("ratio must not be negative");
+        simplifyRatio = ratio;
     }
 
-    private static Geometry bufferPoint(Point point, double distance, GeometryFactory factory) {
-        Coordinate[] coords = createCircleCoordinates(point.getCoordinate(), distance, 16);
+    public static double getPlanarLimit() {
+        return planarLimit;
+    }
+
+    // Features whose half extent plus buffer distance stays within this many metres are buffered in a local
+    // equirectangular frame instead of AUTO:42001, see LocalPlanar for the error bound; 0 disables it
+    public static void setPlanarLimit(double metres) {
+        if (metres < 0) throw new IllegalArgumentException("limit must not be negative");
+        planarLimit = metres;
+    }
+
+    public static int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    // With the SEQUENTIAL_TREE union mode, geometries with at least this many vertices have the subtrees of
+    // their piece union computed in parallel on the fork-join pool the caller runs on (or the common pool);
+    // smaller ones keep the sequential tree. GLOBAL always keeps its single cascaded union. 0 disables it.
+    public static void setParallelThreshold(int vertices) {
+        if (vertices < 0) throw new IllegalArgumentException("threshold must not be negative");
+        parallelThreshold = vertices;
+    }
+
+    public static SnapMode getSnapMode() {
+        return snapMode;
+    }
+
+    public static void setSnapMode(SnapMode mode) {
+        snapMode = mode;
+    }
+
+    public static PrecisionModel getSnapPrecision() {
+        return snapPrecision;
+    }
+
+    // Grid the segment and joint polygons are snapped to when snapping applies, in projected units
+    public static void setSnapPrecision(PrecisionModel precision) {
+        if (precision.isFloating()) throw new IllegalArgumentException("snapping needs a fixed precision model");
+        snapPrecision = precision;
+    }
+
+    // Number of features whose segment and joint polygons were unioned on the fixed precision grid
+    public static long getSnappedFeatureCount() {
+        return snappedFeatures.get();
+    }
+
+    public static void resetSnappedFeatureCount() {
+        snappedFeatures.set(0);
+    }
+
+    public static BufferMetrics getMetrics() {
+        return Instrumentation.metrics;
+    }
+
+    // Installs a sink for per-stage timings and per-feature counts, null disables instrumentation
+    public static void setMetrics(BufferMetrics metrics) {
+        Instrumentation.metrics = metrics;
+    }
+
+    static Coordinate[] createCircleCoordinates(double centerX, double centerY, double radius, int outerNumCoords) {
+        return CircleTemplate.of(outerNumCoords).circle(centerX, centerY, radius);
+    }
+
+    // Segment count of the circles used for a buffer of this distance
+    static int circleSegments(double distance) {
+        return CircleTemplate.segmentsFor(distance, maxChordError, CIRCLE_SEGMENTS);
+    }
+
+    private static Geometry bufferPoint(double[] vertices, double distance, GeometryFactory factory) {
+        long start = Instrumentation.startStage();
+        Coordinate[] coords = createCircleCoordinates(vertices[0], vertices[1], distance, circleSegments(distance));
         LinearRing ring = factory.createLinearRing(coords);
-        return factory.createPolygon(ring);
+        Polygon circle = factory.createPolygon(ring);
+        Instrumentation.endStage(BufferMetrics.Stage.PIECES, start);
+        return circle;
         //return point.buffer(distance);
     }
 
-    private static List<Coordinate> extractLineVertices(MultiLineString multiLineString) {
-        List<Coordinate> vertices = new ArrayList<>();
+    // Packs a coordinate sequence into x,y pairs and drops consecutive duplicates.
+    // For closed rings the closing vertex is dropped as well.
+    private static double[] packVertices(CoordinateSequence sequence, boolean closed) {
+        int size = sequence.size();
+        double[] packed = new double[2 * size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            double x = sequence.getX(i);
+            double y = sequence.getY(i);
+            if (n > 0 && packed[2 * n - 2] == x && packed[2 * n - 1] == y) continue;
+            packed[2 * n] = x;
+            packed[2 * n + 1] = y;
+            n++;
+        }
+        if (closed && n > 1 && packed[0] == packed[2 * n - 2] && packed[1] == packed[2 * n - 1]) {
+            n--;
+        }
+        return n == size ? packed : Arrays.copyOf(packed, 2 * n);
+    }
+
+    private static List<double[]> extractLineVertices(MultiLineString multiLineString) {
+        List<double[]> parts = new ArrayList<>(multiLineString.getNumGeometries());
         for (int i = 0; i < multiLineString.getNumGeometries(); i++) {
             LineString lineString = (LineString) multiLineString.getGeometryN(i);
-            for (Coordinate coordinate : lineString.getCoordinates()) {
-                if (!vertices.contains(coordinate)) {
-                    vertices.add(coordinate);
-                }
+            double[] vertices = packVertices(lineString.getCoordinateSequence(), false);
+            if (vertices.length > 0) {
+                parts.add(vertices);
             }
         }
-        return vertices;
+        return parts;
     }
 
-    private static List<Coordinate> extractPolygonVertices(MultiPolygon multiPolygon) {
-        List<Coordinate> vertices = new ArrayList<>();
+    // Only exterior rings are extracted, the buffered polygon keeps the outer shell of the union anyway
+    private static List<double[]> extractPolygonVertices(MultiPolygon multiPolygon) {
+        List<double[]> parts = new ArrayList<>(multiPolygon.getNumGeometries());
         for (int i = 0; i < multiPolygon.getNumGeometries(); i++) {
             Polygon polygon = (Polygon) multiPolygon.getGeometryN(i);
-            for (Coordinate coordinate : polygon.getCoordinates()) {
-                if (!vertices.contains(coordinate)) {
-                    vertices.add(coordinate);
-                }
+            if (polygon.isEmpty()) continue;
+            double[] vertices = packVertices(polygon.getExteriorRing().getCoordinateSequence(), true);
+            if (vertices.length > 0) {
+                parts.add(vertices);
             }
         }
-        return vertices;
+        return parts;
     }
 
-    private static Geometry bufferLine(MultiLineString line, double distance, GeometryFactory factory) {
-        factory = line.getFactory();
-        List<Coordinate> vertices = extractLineVertices(line);
+    // Null for a zero-length edge, whose buffer is just the joint circle at its vertex
+    private static Polygon createSegmentPolygon(double[] vertices, int from, int to, double distance, GeometryFactory factory) {
+        double x1 = vertices[2 * from], y1 = vertices[2 * from + 1];
+        double x2 = vertices[2 * to], y2 = vertices[2 * to + 1];
+
+        // Calculate perpendicular vector
+        double length = Math.hypot(x2 - x1, y2 - y1);
+        if (length == 0) return null;
+        double dx = -distance * (y2 - y1) / length;
+        double dy = distance * (x2 - x1) / length;
+        if (!Double.isFinite(dx) || !Double.isFinite(dy)) {
+            throw new IllegalArgumentException("non-finite segment buffer at " + x1 + " " + y1);
+        }
 
+        // Calculate buffered coordinates for both sides
+        Coordinate buf1 = new Coordinate(x1 + dx, y1 + dy);
+        Coordinate[] ringCoords = {
+                buf1,
+                new Coordinate(x2 + dx, y2 + dy),
+                new Coordinate(x2 - dx, y2 - dy),
+                new Coordinate(x1 - dx, y1 - dy),
+                buf1
+        };
+        return factory.createPolygon(ringCoords);
+    }
+
+    private static Polygon createJointPolygon(double[] vertices, int index, double distance, CircleTemplate circle, GeometryFactory factory) {
+        return factory.createPolygon(circle.circle(vertices[2 * index], vertices[2 * index + 1], distance));
+    }
+
+    private static Geometry bufferLine(List<double[]> parts, double distance, GeometryFactory factory, BufferEngine engine) {
+        CircleTemplate circle = CircleTemplate.of(circleSegments(distance));
+        if (engine == BufferEngine.OFFSET_CURVE) {
+            return OffsetCurveBuffer.bufferLines(parts, distance, factory, circle, unionMode);
+        }
+
+        long start = Instrumentation.startStage();
         // Initialize list to hold buffered polygons
         List<Polygon> bufferedPolygons = new ArrayList<>();
 
-        // Buffer every pair of adjacent vertices
-        for (int i = 0; i < vertices.size() - 1; i++) {
-            Coordinate p1 = vertices.get(i);
-            Coordinate p2 = vertices.get(i + 1);
-
-            // Calculate angle and perpendicular vectors
-            double angle = Angle.angle(p1, p2);
-            double dx = distance * Math.cos(angle + Math.PI / 2);
-            double dy = distance * Math.sin(angle + Math.PI / 2);
-
-            // Calculate buffered coordinates for both sides
-            Coordinate buf1 = new Coordinate(p1.x + dx, p1.y + dy);
-            Coordinate buf2 = new Coordinate(p2.x + dx, p2.y + dy);
-            Coordinate buf3 = new Coordinate(p2.x - dx, p2.y - dy);
-            Coordinate buf4 = new Coordinate(p1.x - dx, p1.y - dy);
-
-            // Create LinearRing for the buffered polygon
-            Coordinate[] ringCoords = {buf1, buf2, buf3, buf4, buf1};
-            LinearRing ring = factory.createLinearRing(ringCoords);
-
-            // Create Polygon from the LinearRing
-            Polygon bufferedPolygon = factory.createPolygon(ring, null);
-
-            // Add the buffered polygon to the list
-            bufferedPolygons.add(bufferedPolygon);
-            bufferedPolygons.add((Polygon) bufferPoint(factory.createPoint(new Coordinate(p1.x, p1.y)), distance, factory));
-            if(i + 1 == vertices.size() - 1){
-                bufferedPolygons.add((Polygon) bufferPoint(factory.createPoint(new Coordinate(p2.x, p2.y)), distance, factory));
+        // Buffer every pair of adjacent vertices, each part on its own
+        for (double[] vertices : parts) {
+            int n = vertices.length / 2;
+            for (int i = 0; i < n - 1; i++) {
+                Polygon segment = createSegmentPolygon(vertices, i, i + 1, distance, factory);
+                if (segment != null) bufferedPolygons.add(segment);
+                bufferedPolygons.add(createJointPolygon(vertices, i, distance, circle, factory));
             }
+            bufferedPolygons.add(createJointPolygon(vertices, n - 1, distance, circle, factory));
         }
+        Instrumentation.endStage(BufferMetrics.Stage.PIECES, start);
 
         // Combine buffered polygons into a single geometry
-        GeometryCollection geometryCollection = factory.createGeometryCollection(bufferedPolygons.toArray(new Polygon[0]));
-        return geometryCollection.union();
+        start = Instrumentation.startStage();
+        Geometry union = unionPieces(bufferedPolygons, vertexCount(parts), factory);
+        Instrumentation.endStage(BufferMetrics.Stage.UNION, start);
+        return union;
         //return line.buffer(distance);
     }
 
-    private static Geometry bufferMultiPolygon(MultiPolygon multiPolygon, double distance, GeometryFactory factory) {
-        factory = multiPolygon.getFactory();
-
-        List<Coordinate> vertices = extractPolygonVertices(multiPolygon);
+    private static Geometry bufferMultiPolygon(List<double[]> shells, double distance, GeometryFactory factory, BufferEngine engine) {
+        CircleTemplate circle = CircleTemplate.of(circleSegments(distance));
+        if (engine == BufferEngine.OFFSET_CURVE) {
+            return keepShells(OffsetCurveBuffer.bufferShells(shells, distance, factory, circle, unionMode), factory);
+        }
 
+        long start = Instrumentation.startStage();
         // Initialize list to hold buffered polygons
         List<Polygon> bufferedPolygons = new ArrayList<>();
 
-        // Buffer every pair of adjacent vertices
-        for (int i = 0; i < vertices.size(); i++) {
-            Coordinate p1 = vertices.get(i);
-            Coordinate p2 = null;
-            if(i + 1 == vertices.size()){
-                p2 = vertices.get(0);
-            }else{
-                p2 = vertices.get(i + 1);
+        // Buffer every pair of adjacent vertices around each shell
+        for (double[] vertices : shells) {
+            int n = vertices.length / 2;
+            for (int i = 0; i < n; i++) {
+                Polygon segment = n > 1 ? createSegmentPolygon(vertices, i, (i + 1) % n, distance, factory) : null;
+                if (segment != null) bufferedPolygons.add(segment);
+                bufferedPolygons.add(createJointPolygon(vertices, i, distance, circle, factory));
             }
+        }
+        Instrumentation.endStage(BufferMetrics.Stage.PIECES, start);
 
-            // Calculate angle and perpendicular vectors
-            double angle = Angle.angle(p1, p2);
-            double dx = distance * Math.cos(angle + Math.PI / 2);
-            double dy = distance * Math.sin(angle + Math.PI / 2);
+        // Combine buffered polygons into a single geometry
+        start = Instrumentation.startStage();
+        Geometry union = keepShells(unionPieces(bufferedPolygons, vertexCount(shells), factory), factory);
+        Instrumentation.endStage(BufferMetrics.Stage.UNION, start);
+        return union;
+    }
 
-            // Calculate buffered coordinates for both sides
-            Coordinate buf1 = new Coordinate(p1.x + dx, p1.y + dy);
-            Coordinate buf2 = new Coordinate(p2.x + dx, p2.y + dy);
-            Coordinate buf3 = new Coordinate(p2.x - dx, p2.y - dy);
-            Coordinate buf4 = new Coordinate(p1.x - dx, p1.y - dy);
+    private static Geometry unionPieces(List<Polygon> pieces, int vertices, GeometryFactory factory) {
+        SnapMode snap = snapMode;
+        if (snap == SnapMode.ALWAYS) {
+            return snappedUnion(pieces, vertices, factory);
+        }
+        try {
+            return unionPieces(pieces, vertices, factory, null);
+        } catch (TopologyException e) {
+            if (snap == SnapMode.OFF) throw e;
+            return snappedUnion(pieces, vertices, factory);
+        }
+    }
 
-            // Create LinearRing for the buffered polygon
-            Coordinate[] ringCoords = {buf1, buf2, buf3, buf4, buf1};
-            LinearRing ring = factory.createLinearRing(ringCoords);
+    // scale of the grid unions may be snapped to, 0 when snapping is off
+    private static double snapScale() {
+        return snapMode == SnapMode.OFF ? 0 : snapPrecision.getScale();
+    }
 
-            // Create Polygon from the LinearRing
-            Polygon bufferedPolygon = factory.createPolygon(ring);
-            Polygon bufferedPoint = (Polygon) bufferPoint(factory.createPoint(new Coordinate(p1.x, p1.y)), distance, factory);
+    private static Geometry snappedUnion(List<Polygon> pieces, int vertices, GeometryFactory factory) {
+        snappedFeatures.incrementAndGet();
+        return unionPieces(pieces, vertices, factory, snapPrecision);
+    }
 
-            // Add the buffered polygon to the list
-            bufferedPolygons.add(bufferedPolygon);
-            bufferedPolygons.add(bufferedPoint);
+    // Pieces are in vertex order, so the leaves of the parallel union tree are vertex-range chunks of the input
+    private static Geometry unionPieces(List<Polygon> pieces, int vertices, GeometryFactory factory, PrecisionModel precision) {
+        UnionMode mode = unionMode;
+        int threshold = parallelThreshold;
+        if (mode == UnionMode.SEQUENTIAL_TREE && threshold > 0 && vertices >= threshold) {
+            ForkJoinPool pool = ForkJoinTask.getPool();
+            if (pool == null) pool = ForkJoinPool.commonPool();
+            if (pool.getParallelism() > 1) {
+                int leafSize = Math.max(PieceUnion.BLOCK_SIZE, pieces.size() / (4 * pool.getParallelism()));
+                return PieceUnion.parallelUnion(pieces, factory, pool, leafSize, precision);
+            }
         }
+        return PieceUnion.union(pieces, factory, mode, precision);
+    }
 
-        // Combine buffered polygons into a single geometry
-        GeometryCollection geometryCollection = factory.createGeometryCollection(bufferedPolygons.toArray(new Polygon[0]));
-        Polygon bufferedEdge = (Polygon) geometryCollection.union();
-        Coordinate[] outerCoordinates = bufferedEdge.getExteriorRing().getCoordinates();
-        return factory.createPolygon(outerCoordinates);
+    private static int vertexCount(List<double[]> parts) {
+        int count = 0;
+        for (double[] part : parts) {
+            count += part.length / 2;
+        }
+        return count;
+    }
+
+    // Fills the buffered edges by keeping only the exterior ring of every unioned polygon
+    private static Geometry keepShells(Geometry bufferedEdges, GeometryFactory factory) {
+        Polygon[] shells = new Polygon[bufferedEdges.getNumGeometries()];
+        for (int i = 0; i < shells.length; i++) {
+            Polygon bufferedEdge = (Polygon) bufferedEdges.getGeometryN(i);
+            shells[i] = factory.createPolygon(bufferedEdge.getExteriorRing().getCoordinateSequence());
+        }
+        return shells.length == 1 ? shells[0] : factory.createMultiPolygon(shells);
     }
 
     public static Geometry buffer(Geometry geometry, double distance) {
+        return buffer(geometry, distance, engine);
+    }
+
+    public static Geometry buffer(Geometry geometry, double distance, BufferEngine engine) {
+        ProjectedGeometry prepared = prepare(geometry);
+        return prepared == null ? null : buffer(prepared, distance, engine);
+    }
+
+    // Extracts the vertex parts of a projected geometry, null for unsupported geometry types
+    static ProjectedGeometry prepare(Geometry geometry) {
+        long start = Instrumentation.startStage();
+        ProjectedGeometry prepared = extract(geometry);
+        Instrumentation.endStage(BufferMetrics.Stage.EXTRACT, start);
+        return prepared;
+    }
+
+    private static ProjectedGeometry extract(Geometry geometry) {
         GeometryFactory factory = geometry.getFactory();
 
         if (geometry instanceof Point) {
-            return bufferPoint((Point) geometry, distance, factory);
+            Coordinate coordinate = geometry.getCoordinate();
+            List<double[]> parts = Collections.singletonList(new double[]{coordinate.x, coordinate.y});
+            return new ProjectedGeometry(ProjectedGeometry.Type.POINT, parts, factory);
         } else if (geometry instanceof MultiLineString) {
-            return bufferLine((MultiLineString) geometry, distance, factory);
+            return new ProjectedGeometry(ProjectedGeometry.Type.LINES, extractLineVertices((MultiLineString) geometry), factory);
         } else if (geometry instanceof LineString) {
             MultiLineString changedGeometry = factory.createMultiLineString(new LineString[]{(LineString) geometry});
-            return bufferLine(changedGeometry, distance, factory);
+            return new ProjectedGeometry(ProjectedGeometry.Type.LINES, extractLineVertices(changedGeometry), factory);
         } else if (geometry instanceof MultiPolygon) {
-            return bufferMultiPolygon((MultiPolygon) geometry, distance, factory);
+            return new ProjectedGeometry(ProjectedGeometry.Type.SHELLS, extractPolygonVertices((MultiPolygon) geometry), factory);
         } else if (geometry instanceof Polygon) {
             MultiPolygon changedPolygon = factory.createMultiPolygon(new Polygon[]{(Polygon) geometry});
-            return bufferMultiPolygon(changedPolygon, distance, factory);
+            return new ProjectedGeometry(ProjectedGeometry.Type.SHELLS, extractPolygonVertices(changedPolygon), factory);
         } else {
             return null;
         }
     }
 
+    static Geometry buffer(ProjectedGeometry prepared, double distance, BufferEngine engine) {
+        double ratio = simplifyRatio;
+        if (ratio > 0 && prepared.type != ProjectedGeometry.Type.POINT) {
+            long start = Instrumentation.startStage();
+            prepared = VertexSimplifier.simplify(prepared, ratio * Math.abs(distance));
+            Instrumentation.endStage(BufferMetrics.Stage.EXTRACT, start);
+        }
+        switch (prepared.type) {
+            case POINT:
+                return bufferPoint(prepared.parts.get(0), distance, prepared.factory);
+            case LINES:
+                return bufferLine(prepared.parts, distance, prepared.factory, engine);
+            default:
+                return bufferMultiPolygon(prepared.parts, distance, prepared.factory, engine);
+        }
+    }
+
+    private static volatile ProjectionCache projectionCache = new ProjectionCache(256);
+
+    public static ProjectionCache getProjectionCache() {
+        return projectionCache;
+    }
+
+    // null disables caching and decodes an exact AUTO:42001 projection per feature
+    public static void setProjectionCache(ProjectionCache cache) {
+        projectionCache = cache;
+        // cached results were projected with the previous cache
+        BufferResultCache results = resultCache;
+        if (results != null) results.clear();
+    }
+
+    private static ProjectionCache.Projection findProjection(Geometry geom) throws FactoryException {
+        Coordinate centroid = geom.getCentroid().getCoordinate();
+        return findProjection(centroid.x, centroid.y);
+    }
+
+    private static ProjectionCache.Projection findProjection(double x, double y) throws FactoryException {
+        long start = Instrumentation.startStage();
+        ProjectionCache cache = projectionCache;
+        ProjectionCache.Projection projection = cache == null
+                ? ProjectionCache.createProjection(x, y)
+                : cache.get(x, y);
+        Instrumentation.endStage(BufferMetrics.Stage.DECODE, start);
+        return projection;
+    }
+
+    private static Geometry transform(Geometry geom, MathTransform transform) throws TransformException {
+        long start = Instrumentation.startStage();
+        Geometry transformed = JTS.transform(geom, transform);
+        Instrumentation.endStage(BufferMetrics.Stage.TRANSFORM, start);
+        return transformed;
+    }
+
+    private static volatile BufferResultCache resultCache;
+
+    public static BufferResultCache getResultCache() {
+        return resultCache;
+    }
+
+    // Opt-in cache of bufferGeom results for inputs that are buffered at the same distance again, null disables it
+    public static void setResultCache(BufferResultCache cache) {
+        resultCache = cache;
+    }
+
     public static Geometry bufferGeom(CoordinateReferenceSystem origCRS, Geometry geom, double bufferDistance) throws FactoryException, TransformException {
         if(geom.isEmpty()) return null;
-        String code = "AUTO:42001," + geom.getCentroid().getCoordinate().x + "," + geom.getCentroid().getCoordinate().y;
-        CoordinateReferenceSystem auto = CRS.decode(code);
+        BufferResultCache cache = resultCache;
+        if (cache == null) {
+            return computeBufferGeom(geom, bufferDistance);
+        }
+        BufferResultCache.Key key = new BufferResultCache.Key(geom, bufferDistance, origCRS, engine, circleSegments(bufferDistance), simplifyRatio, planarLimit, snapMode, snapScale());
+        Geometry cached = cache.get(key);
+        if (cached != null) return cached;
+        Geometry bufferedGeom = computeBufferGeom(geom, bufferDistance);
+        if (bufferedGeom != null) {
+            cache.put(key, bufferedGeom);
+        }
+        return bufferedGeom;
+    }
 
-        MathTransform toTransform = CRS.findMathTransform(DefaultGeographicCRS.WGS84, auto);
-        MathTransform fromTransform = CRS.findMathTransform(auto, DefaultGeographicCRS.WGS84);
+    private static Geometry computeBufferGeom(Geometry geom, double bufferDistance) throws FactoryException, TransformException {
+        long feature = Instrumentation.startFeature();
+        LocalPlanar frame = LocalPlanar.frameFor(geom.getEnvelopeInternal(), bufferDistance, planarLimit);
+        if (frame != null) {
+            ProjectedGeometry geographic = prepare(geom);
+            if (geographic != null) {
+                Geometry bufferedGeom = bufferPlanar(frame, geographic, bufferDistance);
+                Instrumentation.endFeature(feature, geom.getNumPoints(), bufferedGeom.getNumPoints());
+                return bufferedGeom;
+            }
+        }
+        ProjectionCache.Projection projection = findProjection(geom);
 
-        Geometry pGeom = JTS.transform(geom, toTransform);
+        Geometry pGeom = transform(geom, projection.toProjected);
         Geometry pBufferedGeom = buffer(pGeom, bufferDistance);
-        return JTS.transform(pBufferedGeom, fromTransform);
+        Geometry bufferedGeom = pBufferedGeom == null ? null : transform(pBufferedGeom, projection.fromProjected);
+        Instrumentation.endFeature(feature, geom.getNumPoints(), bufferedGeom == null ? 0 : bufferedGeom.getNumPoints());
+        return bufferedGeom;
     }
-    public static SimpleFeature bufferFeature(SimpleFeature feature, double bufferDistance) throws FactoryException, TransformException {
-        GeometryAttribute gProp = feature.getDefaultGeometryProperty();
-        CoordinateReferenceSystem origCRS = gProp.getDescriptor().getCoordinateReferenceSystem();
 
-        Geometry geom = (Geometry) feature.getDefaultGeometry();
-        Geometry retGeom = bufferGeom(origCRS, geom, bufferDistance);
-        SimpleFeatureType schema = feature.getFeatureType();
+    private static Geometry bufferPlanar(LocalPlanar frame, ProjectedGeometry geographic, double bufferDistance) {
+        long start = Instrumentation.startStage();
+        ProjectedGeometry planar = frame.project(geographic);
+        Instrumentation.endStage(BufferMetrics.Stage.TRANSFORM, start);
+
+        Geometry pBufferedGeom = buffer(planar, bufferDistance, engine);
+
+        start = Instrumentation.startStage();
+        Geometry bufferedGeom = frame.unproject(pBufferedGeom);
+        Instrumentation.endStage(BufferMetrics.Stage.TRANSFORM, start);
+        return bufferedGeom;
+    }
+
+    // Projection and projected vertex parts of a geographic geometry, kept by BufferSession to buffer it again later
+    static ProjectionCache.Projection projectionFor(Geometry geom) throws FactoryException {
+        return findProjection(geom);
+    }
+
+    static ProjectedGeometry prepare(Geometry geom, ProjectionCache.Projection projection) throws TransformException {
+        return prepare(transform(geom, projection.toProjected));
+    }
+
+    // Buffers prepared vertex parts and transforms the result back to geographic coordinates
+    static Geometry buffer(ProjectedGeometry prepared, ProjectionCache.Projection projection, double bufferDistance) throws TransformException {
+        long feature = Instrumentation.startFeature();
+        Geometry bufferedGeom = transform(buffer(prepared, bufferDistance, engine), projection.fromProjected);
+        Instrumentation.endFeature(feature, prepared.getNumVertices(), bufferedGeom.getNumPoints());
+        return bufferedGeom;
+    }
+
+    // Buffers one geometry at several distances, projecting it and extracting its vertices only once.
+    // Results follow the distances in ascending order; with rings each result excludes the previous buffer.
+    public static Geometry[] bufferGeom(CoordinateReferenceSystem origCRS, Geometry geom, double[] bufferDistances, boolean rings) throws FactoryException, TransformException {
+        double[] distances = bufferDistances.clone();
+        Arrays.sort(distances);
+        Geometry[] result = new Geometry[distances.length];
+        if(geom.isEmpty()) return result;
+        long feature = Instrumentation.startFeature();
+        ProjectionCache.Projection projection = findProjection(geom);
+
+        ProjectedGeometry prepared = prepare(transform(geom, projection.toProjected));
+        if (prepared == null) return result;
+        Geometry previous = null;
+        long verticesOut = 0;
+        for (int i = 0; i < distances.length; i++) {
+            Geometry pBufferedGeom = buffer(prepared, distances[i], engine);
+            Geometry ring = pBufferedGeom;
+            if (rings && previous != null) {
+                long start = Instrumentation.startStage();
+                ring = pBufferedGeom.difference(previous);
+                Instrumentation.countOverlays(1);
+                Instrumentation.endStage(BufferMetrics.Stage.UNION, start);
+            }
+            result[i] = transform(ring, projection.fromProjected);
+            verticesOut += result[i].getNumPoints();
+            previous = pBufferedGeom;
+        }
+        Instrumentation.endFeature(feature, geom.getNumPoints(), verticesOut);
+        return result;
+    }
+
+    // Buffers a record read by ShapefileGeometryReader. The packed geographic vertices are projected in place of
+    // a JTS.transform of an input geometry, and the projection is chosen from the record's bounding box centre.
+    static Geometry bufferRecord(ShapefileGeometryReader.Record record, double bufferDistance, GeometryFactory factory) throws FactoryException, TransformException {
+        if (record.isNull()) return null;
+        long feature = Instrumentation.startFeature();
+        LocalPlanar frame = LocalPlanar.frameFor(LocalPlanar.envelopeOf(record.parts), bufferDistance, planarLimit);
+        if (frame != null) {
+            ProjectedGeometry geographic = new ProjectedGeometry(record.type, record.parts, factory);
+            Geometry bufferedGeom = bufferPlanar(frame, geographic, bufferDistance);
+            Instrumentation.endFeature(feature, geographic.getNumVertices(), bufferedGeom.getNumPoints());
+            return bufferedGeom;
+        }
+        ProjectionCache.Projection projection = findProjection(record.centerX, record.centerY);
+
+        long start = Instrumentation.startStage();
+        List<double[]> projected = new ArrayList<>(record.parts.size());
+        long verticesIn = 0;
+        for (double[] part : record.parts) {
+            double[] projectedPart = new double[part.length];
+            projection.toProjected.transform(part, 0, projectedPart, 0, part.length / 2);
+            projected.add(projectedPart);
+            verticesIn += part.length / 2;
+        }
+        Instrumentation.endStage(BufferMetrics.Stage.TRANSFORM, start);
+
+        Geometry pBufferedGeom = buffer(new ProjectedGeometry(record.type, projected, factory), bufferDistance, engine);
+        Geometry bufferedGeom = transform(pBufferedGeom, projection.fromProjected);
+        Instrumentation.endFeature(feature, verticesIn, bufferedGeom.getNumPoints());
+        return bufferedGeom;
+    }
+
+    public static final String DISTANCE_ATTRIBUTE = "buf_dist";
+
+    private static final ConcurrentMap<SimpleFeatureType, SimpleFeatureType> bufferedSchemas = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<SimpleFeatureType, SimpleFeatureType> multiDistanceSchemas = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Map<SimpleFeatureType, SimpleFeatureBuilder>> bufferedBuilders =
+            ThreadLocal.withInitial(IdentityHashMap::new);
+    private static final ThreadLocal<Map<SimpleFeatureType, SimpleFeatureBuilder>> multiDistanceBuilders =
+            ThreadLocal.withInitial(IdentityHashMap::new);
+    private static final int MAX_BUILDERS_PER_THREAD = 64;
+
+    public static SimpleFeatureType createBufferedSchema(SimpleFeatureType schema) {
+        return bufferedSchemas.computeIfAbsent(schema, BufferFactory::deriveBufferedSchema);
+    }
+
+    // buffered schema with an extra attribute holding the distance of each buffer
+    public static SimpleFeatureType createMultiDistanceSchema(SimpleFeatureType schema) {
+        return multiDistanceSchemas.computeIfAbsent(schema, s -> {
+            SimpleFeatureTypeBuilder featureBuilder = new SimpleFeatureTypeBuilder();
+            featureBuilder.init(createBufferedSchema(s));
+            featureBuilder.add(DISTANCE_ATTRIBUTE, Double.class);
+            return featureBuilder.buildFeatureType();
+        });
+    }
+
+    private static SimpleFeatureType deriveBufferedSchema(SimpleFeatureType schema) {
         SimpleFeatureTypeBuilder featureBuilder = new SimpleFeatureTypeBuilder();
-        featureBuilder.setCRS(origCRS);
+        featureBuilder.setCRS(schema.getCoordinateReferenceSystem());
 
         for (AttributeDescriptor attrib : schema.getAttributeDescriptors()) {
             AttributeType type = attrib.getType();
@@ -221,16 +623,99 @@ public class BufferFactory {
         }
         featureBuilder.setName(schema.getName());
 
-        SimpleFeatureType newSchema = featureBuilder.buildFeatureType();
-        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(newSchema);
-        java.util.List<Object> atts = feature.getAttributes();
-        for (int i = 0; i < atts.size(); i++) {
-            if (atts.get(i) instanceof Geometry) {
-                atts.set(i, retGeom);
+        return featureBuilder.buildFeatureType();
+    }
+
+    // SimpleFeatureBuilder is not thread-safe, so every thread keeps its own builder per input schema
+    private static SimpleFeatureBuilder builderFor(ThreadLocal<Map<SimpleFeatureType, SimpleFeatureBuilder>> perThread,
+                                                   SimpleFeatureType schema, Function<SimpleFeatureType, SimpleFeatureType> derive) {
+        Map<SimpleFeatureType, SimpleFeatureBuilder> builders = perThread.get();
+        SimpleFeatureBuilder builder = builders.get(schema);
+        if (builder == null) {
+            if (builders.size() >= MAX_BUILDERS_PER_THREAD) builders.clear();
+            builder = new SimpleFeatureBuilder(derive.apply(schema));
+            builders.put(schema, builder);
+        }
+        return builder;
+    }
+
+    public static SimpleFeature bufferFeature(SimpleFeature feature, double bufferDistance) throws FactoryException, TransformException {
+        GeometryAttribute gProp = feature.getDefaultGeometryProperty();
+        CoordinateReferenceSystem origCRS = gProp.getDescriptor().getCoordinateReferenceSystem();
+
+        Geometry geom = (Geometry) feature.getDefaultGeometry();
+        Geometry retGeom = bufferGeom(origCRS, geom, bufferDistance);
+
+        return createBufferedFeature(feature, retGeom);
+    }
+
+    // The feature with its attributes and the buffered geometry in place of its geometry attributes
+    static SimpleFeature createBufferedFeature(SimpleFeature feature, Geometry bufferedGeom) {
+        SimpleFeatureBuilder builder = builderFor(bufferedBuilders, feature.getFeatureType(), BufferFactory::createBufferedSchema);
+        builder.reset();
+        for (int i = 0; i < feature.getAttributeCount(); i++) {
+            Object value = feature.getAttribute(i);
+            builder.set(i, value instanceof Geometry ? bufferedGeom : value);
+        }
+
+        return builder.buildFeature(null);
+    }
+
+    // Buffers the feature at the distance the expression evaluates to for it, e.g. an attribute or a CQL expression
+    public static SimpleFeature bufferFeature(SimpleFeature feature, Expression bufferDistance) throws FactoryException, TransformException {
+        return bufferFeature(feature, distanceOf(feature, bufferDistance));
+    }
+
+    static double distanceOf(SimpleFeature feature, Expression bufferDistance) {
+        Double distance = bufferDistance.evaluate(feature, Double.class);
+        if (distance == null || distance.isNaN() || distance.isInfinite()) {
+            throw new IllegalArgumentException("no buffer distance for " + feature.getID() + " from " + bufferDistance);
+        }
+        return distance;
+    }
+
+    // One output feature per distance, in ascending distance order, with the distance in DISTANCE_ATTRIBUTE
+    public static List<SimpleFeature> bufferFeature(SimpleFeature feature, double[] bufferDistances, boolean rings) throws FactoryException, TransformException {
+        GeometryAttribute gProp = feature.getDefaultGeometryProperty();
+        CoordinateReferenceSystem origCRS = gProp.getDescriptor().getCoordinateReferenceSystem();
+
+        Geometry geom = (Geometry) feature.getDefaultGeometry();
+        Geometry[] retGeoms = bufferGeom(origCRS, geom, bufferDistances, rings);
+        double[] distances = bufferDistances.clone();
+        Arrays.sort(distances);
+
+        SimpleFeatureBuilder builder = builderFor(multiDistanceBuilders, feature.getFeatureType(), BufferFactory::createMultiDistanceSchema);
+        List<SimpleFeature> bufferedFeatures = new ArrayList<>(distances.length);
+        for (int d = 0; d < distances.length; d++) {
+            builder.reset();
+            for (int i = 0; i < feature.getAttributeCount(); i++) {
+                Object value = feature.getAttribute(i);
+                builder.set(i, value instanceof Geometry ? retGeoms[d] : value);
+            }
+            builder.set(DISTANCE_ATTRIBUTE, distances[d]);
+            bufferedFeatures.add(builder.buildFeature(null));
+        }
+        return bufferedFeatures;
+    }
+
+    public static java.util.List<SimpleFeature> bufferFeatures(SimpleFeatureCollection features, double[] bufferDistances, boolean rings) {
+        List<SimpleFeature> bufferedFeaturesList = new ArrayList<>();
+
+        SimpleFeatureIterator iterator = features.features();
+        try {
+            while (iterator.hasNext()) {
+                SimpleFeature feature = iterator.next();
+                bufferedFeaturesList.addAll(bufferFeature(feature, bufferDistances, rings));
             }
+        } catch (FactoryException e) {
+            throw new RuntimeException(e);
+        } catch (TransformException e) {
+            throw new RuntimeException(e);
+        } finally {
+            iterator.close();
         }
 
-        return builder.buildFeature(null, atts.toArray());
+        return bufferedFeaturesList;
     }
 
     public static java.util.List<SimpleFeature> bufferFeatures(SimpleFeatureCollection features, double bufferDistance) {
@@ -252,4 +737,12 @@ public class BufferFactory {
 
         return bufferedFeaturesList;
     }
+
+    // Buffers on a pool of that many threads; features that fail are left out and reported in the result
+    public static ParallelBufferer.Result bufferFeatures(SimpleFeatureCollection features, double bufferDistance, int threads) {
+        try (ParallelBufferer bufferer = new ParallelBufferer(threads)) {
+            List<SimpleFeature> bufferedFeaturesList = bufferer.bufferFeatures(features, bufferDistance);
+            return new ParallelBufferer.Result(bufferedFeaturesList, bufferer.getFailures());
+        }
+    }
 }
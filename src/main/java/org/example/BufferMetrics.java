@@ -0,0 +1,26 @@
+package org.example;
+
+/**
+ * Receives instrumentation from the buffering hot path. Install an implementation with
+ * {@link BufferFactory#setMetrics}; while none is installed the hot path only reads one volatile field.
+ * Implementations are called concurrently from every buffering thread.
+ */
+public interface BufferMetrics {
+    enum Stage {
+        // AUTO:42001 lookup, a cache hit or a CRS decode
+        DECODE,
+        // JTS.transform into the projection and back
+        TRANSFORM,
+        // packing the projected vertices
+        EXTRACT,
+        // segment and joint polygons, or the raw offset curve
+        PIECES,
+        // overlay of the pieces into the final buffer
+        UNION
+    }
+
+    void recordStage(Stage stage, long nanos);
+
+    // Called once per buffered feature geometry. allocatedBytes is -1 when the JVM cannot measure it.
+    void recordFeature(long verticesIn, long verticesOut, int overlays, long allocatedBytes);
+}
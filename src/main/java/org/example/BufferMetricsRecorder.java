@@ -0,0 +1,174 @@
+package org.example;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory {@link BufferMetrics} with a latency histogram per stage and histograms of vertex counts,
+ * overlays and allocated bytes per feature. Histograms use power-of-two buckets, so recording is a few
+ * lock-free increments and percentiles are exact to within a factor of two.
+ */
+public class BufferMetricsRecorder implements BufferMetrics {
+
+    public static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long value) {
+            if (value < 0) return;
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value) - (value == 0 ? 0 : 1));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getSum() {
+            return sum.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public double getMean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        // upper bound of the bucket holding the given quantile, capped by the largest recorded value
+        public long getPercentile(double quantile) {
+            long n = count.sum();
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(quantile * n);
+            long seen = 0;
+            for (int i = 0; i < 64; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(i >= 62 ? Long.MAX_VALUE : (2L << i) - 1, max.get());
+                }
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < 64; i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            sum.reset();
+            max.reset();
+        }
+    }
+
+    private final Histogram[] stages = new Histogram[Stage.values().length];
+    private final Histogram verticesIn = new Histogram();
+    private final Histogram verticesOut = new Histogram();
+    private final Histogram overlays = new Histogram();
+    private final Histogram allocatedBytes = new Histogram();
+
+    public BufferMetricsRecorder() {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new Histogram();
+        }
+    }
+
+    @Override
+    public void recordStage(Stage stage, long nanos) {
+        stages[stage.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void recordFeature(long verticesIn, long verticesOut, int overlays, long allocatedBytes) {
+        this.verticesIn.record(verticesIn);
+        this.verticesOut.record(verticesOut);
+        this.overlays.record(overlays);
+        this.allocatedBytes.record(allocatedBytes);
+    }
+
+    public Histogram getStage(Stage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    public Histogram getVerticesIn() {
+        return verticesIn;
+    }
+
+    public Histogram getVerticesOut() {
+        return verticesOut;
+    }
+
+    public Histogram getOverlays() {
+        return overlays;
+    }
+
+    public Histogram getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public void reset() {
+        for (Histogram stage : stages) {
+            stage.reset();
+        }
+        verticesIn.reset();
+        verticesOut.reset();
+        overlays.reset();
+        allocatedBytes.reset();
+    }
+
+    // One line per stage with times in microseconds, then the per feature histograms
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "%-10s %10s %12s %10s %10s %10s %10s%n",
+                "stage", "count", "total ms", "mean us", "p50 us", "p99 us", "max us"));
+        for (Stage stage : Stage.values()) {
+            Histogram h = getStage(stage);
+            text.append(String.format(Locale.ROOT, "%-10s %10d %12.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    stage.name().toLowerCase(Locale.ROOT), h.getCount(), h.getSum() / 1e6, h.getMean() / 1e3,
+                    h.getPercentile(0.5) / 1e3, h.getPercentile(0.99) / 1e3, h.getMax() / 1e3));
+        }
+        text.append(String.format(Locale.ROOT, "%-14s %10s %14s %10s %10s %10s %10s%n",
+                "per feature", "count", "total", "mean", "p50", "p99", "max"));
+        appendText(text, "vertices in", verticesIn);
+        appendText(text, "vertices out", verticesOut);
+        appendText(text, "overlays", overlays);
+        appendText(text, "alloc bytes", allocatedBytes);
+        return text.toString();
+    }
+
+    private static void appendText(StringBuilder text, String name, Histogram h) {
+        text.append(String.format(Locale.ROOT, "%-14s %10d %14d %10.1f %10d %10d %10d%n",
+                name, h.getCount(), h.getSum(), h.getMean(), h.getPercentile(0.5), h.getPercentile(0.99), h.getMax()));
+    }
+
+    // Stage times in nanoseconds
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"stages\":{");
+        for (Stage stage : Stage.values()) {
+            if (stage.ordinal() > 0) json.append(',');
+            json.append('"').append(stage.name().toLowerCase(Locale.ROOT)).append("\":");
+            appendJson(json, getStage(stage));
+        }
+        json.append("},\"features\":{\"verticesIn\":");
+        appendJson(json, verticesIn);
+        json.append(",\"verticesOut\":");
+        appendJson(json, verticesOut);
+        json.append(",\"overlays\":");
+        appendJson(json, overlays);
+        json.append(",\"allocatedBytes\":");
+        appendJson(json, allocatedBytes);
+        return json.append("}}").toString();
+    }
+
+    private static void appendJson(StringBuilder json, Histogram h) {
+        json.append(String.format(Locale.ROOT, "{\"count\":%d,\"sum\":%d,\"mean\":%.1f,\"p50\":%d,\"p90\":%d,\"p99\":%d,\"max\":%d}",
+                h.getCount(), h.getSum(), h.getMean(), h.getPercentile(0.5), h.getPercentile(0.9), h.getPercentile(0.99), h.getMax()));
+    }
+}
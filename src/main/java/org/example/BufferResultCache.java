@@ -0,0 +1,204 @@
+package org.example;
+
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of buffer results, keyed by a fingerprint of the input coordinates, the distance, the CRS
+ * and the settings that change the result. Entries are evicted once either the entry count or the estimated
+ * heap size of the cached input and output vertices exceeds its limit. A fingerprint match is confirmed with
+ * an exact comparison of the input geometry, so a hash collision never returns a wrong buffer.
+ */
+public class BufferResultCache {
+    // heap of one vertex in a CoordinateArraySequence: the Coordinate object and its reference
+    static final long BYTES_PER_VERTEX = 48;
+    private static final long ENTRY_OVERHEAD = 256;
+
+    static final class Key {
+        private final Geometry geometry;
+        private final long fingerprint;
+        private final double distance;
+        private final CoordinateReferenceSystem crs;
+        private final BufferEngine engine;
+        private final int segments;
+        private final double simplifyRatio;
+        private final double planarLimit;
+        private final SnapMode snapMode;
+        private final double snapScale;
+        private final int hash;
+
+        Key(Geometry geometry, double distance, CoordinateReferenceSystem crs, BufferEngine engine, int segments,
+            double simplifyRatio, double planarLimit, SnapMode snapMode, double snapScale) {
+            this(geometry, fingerprint(geometry), distance, crs, engine, segments, simplifyRatio, planarLimit, snapMode, snapScale);
+        }
+
+        private Key(Geometry geometry, long fingerprint, double distance, CoordinateReferenceSystem crs, BufferEngine engine,
+                    int segments, double simplifyRatio, double planarLimit, SnapMode snapMode, double snapScale) {
+            this.geometry = geometry;
+            this.fingerprint = fingerprint;
+            this.distance = distance;
+            this.crs = crs;
+            this.engine = engine;
+            this.segments = segments;
+            this.simplifyRatio = simplifyRatio;
+            this.planarLimit = planarLimit;
+            this.snapMode = snapMode;
+            this.snapScale = snapScale;
+            this.hash = Objects.hash(fingerprint, distance, engine, segments);
+        }
+
+        // the stored key keeps its own copy, so the caller may modify its input geometry afterwards
+        Key detach() {
+            return new Key(geometry.copy(), fingerprint, distance, crs, engine, segments, simplifyRatio, planarLimit, snapMode, snapScale);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return fingerprint == other.fingerprint
+                    && Double.compare(distance, other.distance) == 0
+                    && engine == other.engine
+                    && segments == other.segments
+                    && Double.compare(simplifyRatio, other.simplifyRatio) == 0
+                    && Double.compare(planarLimit, other.planarLimit) == 0
+                    && snapMode == other.snapMode
+                    && Double.compare(snapScale, other.snapScale) == 0
+                    && Objects.equals(crs, other.crs)
+                    && geometry.equalsExact(other.geometry);
+        }
+    }
+
+    private static class Entry {
+        final Geometry result;
+        final long bytes;
+
+        Entry(Geometry result, long bytes) {
+            this.result = result;
+            this.bytes = bytes;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public BufferResultCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be positive");
+        if (maxBytes < 1) throw new IllegalArgumentException("maxBytes must be positive");
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    // The returned geometry is a copy, callers may modify it
+    Geometry get(Key key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.result.copy();
+    }
+
+    void put(Key key, Geometry result) {
+        long size = ENTRY_OVERHEAD + BYTES_PER_VERTEX * (key.geometry.getNumPoints() + result.getNumPoints());
+        // an entry larger than the whole cache would only flush it
+        if (size > maxBytes) return;
+        Entry entry = new Entry(result.copy(), size);
+        synchronized (entries) {
+            Entry previous = entries.put(key.detach(), entry);
+            if (previous != null) bytes -= previous.bytes;
+            bytes += size;
+            Iterator<Entry> eldest = entries.values().iterator();
+            while ((bytes > maxBytes || entries.size() > maxEntries) && eldest.hasNext()) {
+                bytes -= eldest.next().bytes;
+                eldest.remove();
+            }
+        }
+    }
+
+    // 64-bit hash over the geometry type and every coordinate, in sequence order
+    static long fingerprint(Geometry geometry) {
+        long[] hash = {geometry.getGeometryType().hashCode() * 0x9E3779B97F4A7C15L};
+        geometry.apply(new CoordinateSequenceFilter() {
+            @Override
+            public void filter(CoordinateSequence sequence, int i) {
+                hash[0] = mix(hash[0] ^ Double.doubleToLongBits(sequence.getX(i)));
+                hash[0] = mix(hash[0] ^ Double.doubleToLongBits(sequence.getY(i)));
+            }
+
+            @Override
+            public boolean isDone() {
+                return false;
+            }
+
+            @Override
+            public boolean isGeometryChanged() {
+                return false;
+            }
+        });
+        return hash[0];
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getEstimatedBytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            bytes = 0;
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+}
@@ -0,0 +1,159 @@
+package org.example;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.referencing.FactoryException;
+import org.geotools.api.referencing.operation.TransformException;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the projection and the projected vertex parts of every feature by feature ID. Changing the distance
+ * only redoes the buffer and the inverse transform of each feature; editing or removing features recomputes
+ * those features alone. Buffered features keep the order in which their sources were first added.
+ */
+public class BufferSession implements AutoCloseable {
+
+    private static class Entry {
+        final SimpleFeature source;
+        // null for empty geometries
+        final ProjectionCache.Projection projection;
+        // null for empty geometries and unsupported geometry types
+        final ProjectedGeometry prepared;
+        volatile SimpleFeature buffered;
+
+        Entry(SimpleFeature source, ProjectionCache.Projection projection, ProjectedGeometry prepared) {
+            this.source = source;
+            this.projection = projection;
+            this.prepared = prepared;
+        }
+    }
+
+    private final SimpleFeatureType bufferedSchema;
+    private final ForkJoinPool pool;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Map<String, ParallelBufferer.Failure> failures = new ConcurrentHashMap<>();
+    private double bufferDistance;
+
+    public BufferSession(SimpleFeatureCollection features, double bufferDistance) {
+        this(features, bufferDistance, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BufferSession(SimpleFeatureCollection features, double bufferDistance, int threads) {
+        this.bufferedSchema = BufferFactory.createBufferedSchema(features.getSchema());
+        this.pool = new ForkJoinPool(threads);
+        this.bufferDistance = bufferDistance;
+
+        List<SimpleFeature> sources = new ArrayList<>();
+        SimpleFeatureIterator iterator = features.features();
+        try {
+            while (iterator.hasNext()) {
+                sources.add(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+        update(sources);
+    }
+
+    public synchronized double getDistance() {
+        return bufferDistance;
+    }
+
+    // Buffers every prepared feature again at the new distance, nothing is projected again
+    public synchronized void setDistance(double bufferDistance) {
+        this.bufferDistance = bufferDistance;
+        List<Entry> all = new ArrayList<>(entries.values());
+        pool.submit(() -> all.parallelStream().forEach(entry -> buffer(entry, bufferDistance))).join();
+    }
+
+    public synchronized void update(SimpleFeature feature) {
+        update(Collections.singletonList(feature));
+    }
+
+    // Adds new features or replaces the features with the same IDs, only these are projected and buffered
+    public synchronized void update(Collection<SimpleFeature> features) {
+        double distance = bufferDistance;
+        List<SimpleFeature> changed = new ArrayList<>(features);
+        List<Entry> prepared = pool.submit(() -> changed.parallelStream()
+                .map(feature -> {
+                    Entry entry = prepare(feature);
+                    if (entry != null) buffer(entry, distance);
+                    return entry;
+                })
+                .collect(Collectors.toList())).join();
+
+        for (int i = 0; i < changed.size(); i++) {
+            String id = changed.get(i).getID();
+            if (prepared.get(i) == null) {
+                entries.remove(id);
+            } else {
+                entries.put(id, prepared.get(i));
+            }
+        }
+    }
+
+    public synchronized boolean remove(String featureId) {
+        failures.remove(featureId);
+        return entries.remove(featureId) != null;
+    }
+
+    // Snapshot of the buffered features; features that failed to project or buffer are left out
+    public synchronized SimpleFeatureCollection getFeatures() {
+        List<SimpleFeature> buffered = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            if (entry.buffered != null) {
+                buffered.add(entry.buffered);
+            }
+        }
+        return new ListFeatureCollection(bufferedSchema, buffered);
+    }
+
+    public List<ParallelBufferer.Failure> getFailures() {
+        return new ArrayList<>(failures.values());
+    }
+
+    // null when the feature could not be projected or prepared, the failure is recorded
+    private Entry prepare(SimpleFeature feature) {
+        failures.remove(feature.getID());
+        Geometry geom = (Geometry) feature.getDefaultGeometry();
+        if (geom == null || geom.isEmpty()) {
+            return new Entry(feature, null, null);
+        }
+        try {
+            ProjectionCache.Projection projection = BufferFactory.projectionFor(geom);
+            return new Entry(feature, projection, BufferFactory.prepare(geom, projection));
+        } catch (FactoryException | TransformException | RuntimeException e) {
+            failures.put(feature.getID(), new ParallelBufferer.Failure(feature, e));
+            return null;
+        }
+    }
+
+    private void buffer(Entry entry, double distance) {
+        try {
+            Geometry bufferedGeom = entry.prepared == null ? null : BufferFactory.buffer(entry.prepared, entry.projection, distance);
+            entry.buffered = BufferFactory.createBufferedFeature(entry.source, bufferedGeom);
+            failures.remove(entry.source.getID());
+        } catch (TransformException | RuntimeException e) {
+            entry.buffered = null;
+            failures.put(entry.source.getID(), new ParallelBufferer.Failure(entry.source, e));
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
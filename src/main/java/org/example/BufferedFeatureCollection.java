@@ -0,0 +1,160 @@
+package org.example;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.filter.expression.Expression;
+import org.geotools.api.referencing.FactoryException;
+import org.geotools.api.referencing.operation.TransformException;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.collection.BaseSimpleFeatureCollection;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy view of a feature collection in which every feature is buffered when the iterator reaches it.
+ * Nothing is materialized, so heap use stays bounded by one batch regardless of the input size.
+ * Note that every call to {@link #features()} buffers the source again. The size and bounds are taken from
+ * the first iteration that runs to the end and are not updated when the source changes afterwards.
+ */
+public class BufferedFeatureCollection extends BaseSimpleFeatureCollection {
+    private final SimpleFeatureCollection source;
+    private final double bufferDistance;
+    // per feature distance, null when every feature uses bufferDistance
+    private final Expression distanceExpression;
+    private final ParallelBufferer bufferer;
+    // failures of the latest iteration
+    private volatile List<ParallelBufferer.Failure> failures = Collections.synchronizedList(new ArrayList<>());
+    private volatile int size = -1;
+    private volatile ReferencedEnvelope bounds;
+
+    public BufferedFeatureCollection(SimpleFeatureCollection source, double bufferDistance) {
+        this(source, bufferDistance, null);
+    }
+
+    // with a bufferer the iterator pulls one batch at a time and buffers it in parallel
+    public BufferedFeatureCollection(SimpleFeatureCollection source, double bufferDistance, ParallelBufferer bufferer) {
+        this(source, bufferDistance, null, bufferer);
+    }
+
+    // buffers every feature at the distance the expression evaluates to for it
+    public BufferedFeatureCollection(SimpleFeatureCollection source, Expression bufferDistance, ParallelBufferer bufferer) {
+        this(source, Double.NaN, bufferDistance, bufferer);
+    }
+
+    private BufferedFeatureCollection(SimpleFeatureCollection source, double bufferDistance, Expression distanceExpression, ParallelBufferer bufferer) {
+        super(BufferFactory.createBufferedSchema(source.getSchema()));
+        this.source = source;
+        this.bufferDistance = bufferDistance;
+        this.distanceExpression = distanceExpression;
+        this.bufferer = bufferer;
+    }
+
+    @Override
+    public SimpleFeatureIterator features() {
+        failures = Collections.synchronizedList(new ArrayList<>());
+        return new BufferingIterator(source.features(), failures);
+    }
+
+    // Buffers the source once if no iteration has completed yet
+    @Override
+    public int size() {
+        if (size < 0) summarize();
+        return size;
+    }
+
+    @Override
+    public ReferencedEnvelope getBounds() {
+        if (bounds == null) summarize();
+        return new ReferencedEnvelope(bounds);
+    }
+
+    private void summarize() {
+        SimpleFeatureIterator iterator = features();
+        try {
+            while (iterator.hasNext()) {
+                iterator.next();
+            }
+        } finally {
+            iterator.close();
+        }
+    }
+
+    public List<ParallelBufferer.Failure> getFailures() {
+        List<ParallelBufferer.Failure> latest = failures;
+        synchronized (latest) {
+            return new ArrayList<>(latest);
+        }
+    }
+
+    private class BufferingIterator implements SimpleFeatureIterator {
+        private final SimpleFeatureIterator delegate;
+        private final List<ParallelBufferer.Failure> failures;
+        private List<SimpleFeature> pending = Collections.emptyList();
+        private int index;
+        private int count;
+        private final ReferencedEnvelope extent = new ReferencedEnvelope(getSchema().getCoordinateReferenceSystem());
+
+        BufferingIterator(SimpleFeatureIterator delegate, List<ParallelBufferer.Failure> failures) {
+            this.delegate = delegate;
+            this.failures = failures;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (index >= pending.size() && delegate.hasNext()) {
+                pending = bufferer == null ? nextFeature() : nextBatch();
+                index = 0;
+                for (SimpleFeature feature : pending) {
+                    Geometry geometry = (Geometry) feature.getDefaultGeometry();
+                    if (geometry != null) extent.expandToInclude(geometry.getEnvelopeInternal());
+                }
+                count += pending.size();
+            }
+            if (index < pending.size()) return true;
+            if (size < 0) {
+                bounds = extent;
+                size = count;
+            }
+            return false;
+        }
+
+        @Override
+        public SimpleFeature next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return pending.get(index++);
+        }
+
+        private List<SimpleFeature> nextFeature() {
+            SimpleFeature feature = delegate.next();
+            try {
+                SimpleFeature buffered = distanceExpression == null
+                        ? BufferFactory.bufferFeature(feature, bufferDistance)
+                        : BufferFactory.bufferFeature(feature, distanceExpression);
+                return Collections.singletonList(buffered);
+            } catch (FactoryException | TransformException | RuntimeException e) {
+                failures.add(new ParallelBufferer.Failure(feature, e));
+                return Collections.emptyList();
+            }
+        }
+
+        private List<SimpleFeature> nextBatch() {
+            List<SimpleFeature> batch = new ArrayList<>(bufferer.getBatchSize());
+            while (batch.size() < bufferer.getBatchSize() && delegate.hasNext()) {
+                batch.add(delegate.next());
+            }
+            return distanceExpression == null
+                    ? bufferer.bufferBatch(batch, bufferDistance, failures)
+                    : bufferer.bufferBatch(batch, distanceExpression, failures);
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.example;
+
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Unit circle vertices for a given segment count. Circles are produced by scaling and translating the
+ * template, so the trigonometry is done once per segment count instead of once per vertex.
+ */
+final class CircleTemplate {
+    static final int MIN_SEGMENTS = 8;
+    static final int MAX_SEGMENTS = 1024;
+
+    private static final ConcurrentMap<Integer, CircleTemplate> TEMPLATES = new ConcurrentHashMap<>();
+
+    final int segments;
+    final double step;
+    private final double[] cos;
+    private final double[] sin;
+
+    private CircleTemplate(int segments) {
+        this.segments = segments;
+        this.step = 2 * Math.PI / segments;
+        this.cos = new double[segments];
+        this.sin = new double[segments];
+        for (int i = 0; i < segments; i++) {
+            cos[i] = Math.cos(step * i);
+            sin[i] = Math.sin(step * i);
+        }
+    }
+
+    static CircleTemplate of(int segments) {
+        return TEMPLATES.computeIfAbsent(segments, CircleTemplate::new);
+    }
+
+    // Smallest multiple of 4 whose chord error (sagitta) at this radius stays within maxChordError.
+    // A non-positive tolerance keeps the default segment count.
+    static int segmentsFor(double radius, double maxChordError, int defaultSegments) {
+        if (!(maxChordError > 0) || !(radius > 0)) return defaultSegments;
+        if (maxChordError >= radius) return MIN_SEGMENTS;
+        double segments = Math.ceil(Math.PI / Math.acos(1 - maxChordError / radius));
+        int rounded = (int) Math.min(MAX_SEGMENTS, Math.ceil(segments / 4) * 4);
+        return Math.max(MIN_SEGMENTS, rounded);
+    }
+
+    double cos(int i) {
+        return cos[Math.floorMod(i, segments)];
+    }
+
+    double sin(int i) {
+        return sin[Math.floorMod(i, segments)];
+    }
+
+    Coordinate[] circle(double centerX, double centerY, double radius) {
+        Coordinate[] coords = new Coordinate[segments + 1];
+        for (int i = 0; i < segments; i++) {
+            coords[i] = new Coordinate(centerX + radius * cos[i], centerY + radius * sin[i]);
+        }
+        coords[segments] = new Coordinate(coords[0].x, coords[0].y);
+        return coords;
+    }
+}
@@ -0,0 +1,53 @@
+package org.example;
+
+import org.geotools.api.data.DataStore;
+import org.geotools.api.data.FeatureWriter;
+import org.geotools.api.data.SimpleFeatureStore;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.AttributeDescriptor;
+import org.geotools.api.feature.type.GeometryDescriptor;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+
+import java.io.IOException;
+
+/**
+ * Writes a feature collection into a feature store through an append writer, one feature at a time.
+ * Unlike {@link SimpleFeatureStore#addFeatures} it does not collect the ids of the written features,
+ * so a streaming collection can be exported with a fixed heap.
+ */
+public class FeatureStoreSink {
+
+    // Writes under the store's transaction. Leave shapefile stores on AUTO_COMMIT: a shapefile transaction
+    // keeps every feature in memory and rewrites the whole .shp and .dbf when it is committed.
+    public static long write(SimpleFeatureCollection features, SimpleFeatureStore store) throws IOException {
+        DataStore dataStore = (DataStore) store.getDataStore();
+        long count = 0;
+        try (FeatureWriter<SimpleFeatureType, SimpleFeature> writer =
+                     dataStore.getFeatureWriterAppend(store.getSchema().getTypeName(), store.getTransaction())) {
+            SimpleFeatureIterator iterator = features.features();
+            try {
+                while (iterator.hasNext()) {
+                    copy(iterator.next(), writer.next());
+                    writer.write();
+                    count++;
+                }
+            } finally {
+                iterator.close();
+            }
+        }
+        return count;
+    }
+
+    // attributes are matched by name, the target store may have reordered them (e.g. the_geom first in shapefiles)
+    private static void copy(SimpleFeature from, SimpleFeature to) {
+        for (AttributeDescriptor descriptor : to.getFeatureType().getAttributeDescriptors()) {
+            if (descriptor instanceof GeometryDescriptor) {
+                to.setAttribute(descriptor.getLocalName(), from.getDefaultGeometry());
+            } else if (from.getFeatureType().getDescriptor(descriptor.getLocalName()) != null) {
+                to.setAttribute(descriptor.getLocalName(), from.getAttribute(descriptor.getLocalName()));
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.example;
+
+import org.geotools.api.data.Query;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.data.collection.SpatialIndexFeatureCollection;
+import org.geotools.data.collection.SpatialIndexFeatureSource;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.util.factory.Hints;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.simplify.DouglasPeuckerSimplifier;
+
+import java.awt.RenderingHints;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory feature source for displaying buffered features. Features are kept in an STRtree, so a pan or
+ * zoom only visits the features in view, and generalized copies of every feature are kept for a few
+ * coarser levels of detail. The renderer asks for a generalization distance through
+ * {@link Hints#GEOMETRY_DISTANCE}, and the query is answered from the coarsest level that is still finer.
+ */
+public class IndexedBufferSource extends SpatialIndexFeatureSource {
+    // generalization distances of the coarser levels as fractions of the data extent, finest first
+    static final double[] LEVEL_FRACTIONS = {1.0 / 16384, 1.0 / 4096, 1.0 / 1024};
+
+    private final double[] tolerances;
+    private final SpatialIndexFeatureSource[] levels;
+
+    // the features are read once, a lazy BufferedFeatureCollection is buffered only here
+    public IndexedBufferSource(SimpleFeatureCollection features) {
+        this(features.getSchema(), toList(features));
+    }
+
+    private IndexedBufferSource(SimpleFeatureType schema, List<SimpleFeature> features) {
+        super(index(schema, features));
+        Envelope extent = new Envelope();
+        for (SimpleFeature feature : features) {
+            Geometry geometry = (Geometry) feature.getDefaultGeometry();
+            if (geometry != null) extent.expandToInclude(geometry.getEnvelopeInternal());
+        }
+        double size = extent.isNull() ? 0 : Math.max(extent.getWidth(), extent.getHeight());
+
+        tolerances = new double[size > 0 ? LEVEL_FRACTIONS.length : 0];
+        levels = new SpatialIndexFeatureSource[tolerances.length];
+        for (int i = 0; i < tolerances.length; i++) {
+            tolerances[i] = size * LEVEL_FRACTIONS[i];
+            levels[i] = new SpatialIndexFeatureSource(index(schema, generalize(schema, features, tolerances[i])));
+        }
+    }
+
+    private static SpatialIndexFeatureCollection index(SimpleFeatureType schema, List<SimpleFeature> features) {
+        SpatialIndexFeatureCollection collection = new SpatialIndexFeatureCollection(schema);
+        collection.addAll(features);
+        return collection;
+    }
+
+    private static List<SimpleFeature> toList(SimpleFeatureCollection features) {
+        List<SimpleFeature> list = new ArrayList<>();
+        SimpleFeatureIterator iterator = features.features();
+        try {
+            while (iterator.hasNext()) {
+                list.add(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+        return list;
+    }
+
+    // Simplifies the geometries in parallel, a feature that collapses at this tolerance keeps its full geometry
+    private static List<SimpleFeature> generalize(SimpleFeatureType schema, List<SimpleFeature> features, double tolerance) {
+        List<Geometry> simplified = features.parallelStream().map(feature -> {
+            Geometry geometry = (Geometry) feature.getDefaultGeometry();
+            if (geometry == null) return null;
+            Geometry generalized = DouglasPeuckerSimplifier.simplify(geometry, tolerance);
+            return generalized.isEmpty() ? geometry : generalized;
+        }).collect(Collectors.toList());
+
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(schema);
+        List<SimpleFeature> generalized = new ArrayList<>(features.size());
+        for (int i = 0; i < features.size(); i++) {
+            SimpleFeature feature = features.get(i);
+            builder.init(feature);
+            builder.set(schema.getGeometryDescriptor().getLocalName(), simplified.get(i));
+            generalized.add(builder.buildFeature(feature.getID()));
+        }
+        return generalized;
+    }
+
+    @Override
+    public Set<RenderingHints.Key> getSupportedHints() {
+        Set<RenderingHints.Key> hints = new HashSet<>(super.getSupportedHints());
+        hints.add(Hints.GEOMETRY_DISTANCE);
+        return Collections.unmodifiableSet(hints);
+    }
+
+    @Override
+    public SimpleFeatureCollection getFeatures(Query query) throws IOException {
+        Object distance = query.getHints() == null ? null : query.getHints().get(Hints.GEOMETRY_DISTANCE);
+        int level = distance instanceof Number ? levelFor(((Number) distance).doubleValue()) : -1;
+        return level < 0 ? super.getFeatures(query) : levels[level].getFeatures(query);
+    }
+
+    // coarsest level whose tolerance does not exceed the requested distance, -1 for full detail
+    int levelFor(double distance) {
+        int level = -1;
+        for (int i = 0; i < tolerances.length && tolerances[i] <= distance; i++) {
+            level = i;
+        }
+        return level;
+    }
+}
@@ -0,0 +1,62 @@
+package org.example;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Static probes the buffer engines call around each stage. Every probe checks the installed
+ * {@link BufferMetrics} first and does nothing else while it is null.
+ */
+final class Instrumentation {
+    private static final long DISABLED = Long.MIN_VALUE;
+
+    static volatile BufferMetrics metrics;
+
+    private static final ThreadLocal<int[]> overlays = ThreadLocal.withInitial(() -> new int[1]);
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private Instrumentation() {
+    }
+
+    static long startStage() {
+        return metrics == null ? DISABLED : System.nanoTime();
+    }
+
+    static void endStage(BufferMetrics.Stage stage, long start) {
+        BufferMetrics m = metrics;
+        if (m != null && start != DISABLED) {
+            m.recordStage(stage, System.nanoTime() - start);
+        }
+    }
+
+    // Overlays are always counted on the thread that buffers the feature, also when the union itself runs on a pool
+    static void countOverlays(int count) {
+        if (metrics != null) {
+            overlays.get()[0] += count;
+        }
+    }
+
+    // Resets the overlay count of this thread and returns the allocation mark endFeature measures from
+    static long startFeature() {
+        if (metrics == null) return DISABLED;
+        overlays.get()[0] = 0;
+        return allocatedBytes();
+    }
+
+    static void endFeature(long start, long verticesIn, long verticesOut) {
+        BufferMetrics m = metrics;
+        if (m == null || start == DISABLED) return;
+        long allocated = start < 0 ? -1 : allocatedBytes() - start;
+        m.recordFeature(verticesIn, verticesOut, overlays.get()[0], allocated);
+    }
+
+    private static long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+            if (bean.isThreadAllocatedMemoryEnabled()) {
+                return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
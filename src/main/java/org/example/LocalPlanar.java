@@ -0,0 +1,86 @@
+package org.example;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.util.AffineTransformation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Equirectangular frame in metres around the centre of a small geographic feature. Degrees are scaled by the
+ * WGS84 meridional radius and the prime vertical radius times cos(latitude) at the centre, which replaces the
+ * AUTO:42001 decode and both math transforms with two multiplications per vertex.
+ *
+ * The scale is exact at the centre latitude and drifts by about tan(latitude) * dy / R at dy metres north or
+ * south of it, so the relative distance error stays below tan(latitude) * L / 6371 km for a feature whose
+ * half extent plus buffer distance is L. For L = 1 km at 60 degrees that is 0.03 %, 0.3 m, about the scale
+ * error the transverse mercator of AUTO:42001 has itself a few hundred kilometres off its central meridian.
+ */
+final class LocalPlanar {
+    // above this latitude the frame is not used, cos(latitude) changes too quickly
+    static final double MAX_LATITUDE = 80;
+    private static final double SEMI_MAJOR_AXIS = 6378137.0;
+    private static final double ECCENTRICITY_SQ = 0.00669437999014;
+
+    private final double centerX;
+    private final double centerY;
+    // metres per degree of longitude and of latitude
+    private final double scaleX;
+    private final double scaleY;
+
+    private LocalPlanar(double centerX, double centerY, double scaleX, double scaleY) {
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.scaleX = scaleX;
+        this.scaleY = scaleY;
+    }
+
+    // The frame for a feature with this geographic envelope, or null when its half extent plus the distance exceeds
+    // the limit in metres or it lies too close to a pole
+    static LocalPlanar frameFor(Envelope envelope, double distance, double limit) {
+        if (!(limit > 0) || envelope.isNull()) return null;
+        double centerX = (envelope.getMinX() + envelope.getMaxX()) / 2;
+        double centerY = (envelope.getMinY() + envelope.getMaxY()) / 2;
+        if (Math.abs(centerY) > MAX_LATITUDE) return null;
+
+        double latitude = Math.toRadians(centerY);
+        double sin = Math.sin(latitude);
+        double w = 1 - ECCENTRICITY_SQ * sin * sin;
+        double meridional = SEMI_MAJOR_AXIS * (1 - ECCENTRICITY_SQ) / (w * Math.sqrt(w));
+        double primeVertical = SEMI_MAJOR_AXIS / Math.sqrt(w);
+        double scaleX = Math.toRadians(primeVertical * Math.cos(latitude));
+        double scaleY = Math.toRadians(meridional);
+
+        double halfExtent = Math.hypot(envelope.getWidth() * scaleX, envelope.getHeight() * scaleY) / 2;
+        if (Math.abs(distance) + halfExtent > limit) return null;
+        return new LocalPlanar(centerX, centerY, scaleX, scaleY);
+    }
+
+    static Envelope envelopeOf(List<double[]> parts) {
+        Envelope envelope = new Envelope();
+        for (double[] part : parts) {
+            for (int i = 0; i < part.length; i += 2) {
+                envelope.expandToInclude(part[i], part[i + 1]);
+            }
+        }
+        return envelope;
+    }
+
+    ProjectedGeometry project(ProjectedGeometry geographic) {
+        List<double[]> parts = new ArrayList<>(geographic.parts.size());
+        for (double[] part : geographic.parts) {
+            double[] projected = new double[part.length];
+            for (int i = 0; i < part.length; i += 2) {
+                projected[i] = (part[i] - centerX) * scaleX;
+                projected[i + 1] = (part[i + 1] - centerY) * scaleY;
+            }
+            parts.add(projected);
+        }
+        return new ProjectedGeometry(geographic.type, parts, geographic.factory);
+    }
+
+    Geometry unproject(Geometry projected) {
+        return new AffineTransformation(1 / scaleX, 0, centerX, 0, 1 / scaleY, centerY).transform(projected);
+    }
+}
@@ -1,5 +1,6 @@
 package org.example;
 
+import java.awt.event.ActionEvent;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
@@ -7,6 +8,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import javax.swing.*;
 
 import org.geotools.api.data.*;
@@ -18,23 +20,18 @@ import org.geotools.api.referencing.FactoryException;
 import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
 import org.geotools.api.style.*;
 import org.geotools.api.style.Stroke;
-import org.geotools.data.DefaultTransaction;
 import org.geotools.data.collection.ListFeatureCollection;
 import org.geotools.data.shapefile.ShapefileDataStore;
 import org.geotools.data.shapefile.ShapefileDataStoreFactory;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.feature.SchemaException;
-import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.map.FeatureLayer;
 import org.geotools.map.Layer;
 import org.geotools.map.MapContent;
 import org.geotools.referencing.CRS;
 import org.geotools.swing.JMapFrame;
 import org.geotools.swing.data.JFileDataStoreChooser;
-import org.locationtech.jts.geom.Polygon;
-
-import static org.example.BufferFactory.bufferFeatures;
 
 public class Main {
     private static final double POINT_NUMBER = 10;
@@ -88,8 +85,12 @@ public class Main {
     }
 
     public static void exportToShapefile(SimpleFeatureCollection collection, SimpleFeatureType type) throws IOException {
-        File newFile = new File("export2.shp");
+        exportToShapefile(collection, type, new File("export2.shp"));
+    }
 
+    // Streams the collection into a new shapefile through one append writer under AUTO_COMMIT. A shapefile
+    // transaction is rewritten as a whole on every commit, so the features are never committed in chunks.
+    public static long exportToShapefile(SimpleFeatureCollection collection, SimpleFeatureType type, File newFile) throws IOException {
         ShapefileDataStoreFactory dataStoreFactory = new ShapefileDataStoreFactory();
 
         Map<String, Serializable> params = new HashMap<>();
@@ -98,55 +99,48 @@ public class Main {
 
         ShapefileDataStore newDataStore =
                 (ShapefileDataStore) dataStoreFactory.createNewDataStore(params);
+        try {
+            /*
+             * TYPE is used as a template to describe the file contents
+             */
+            newDataStore.createSchema(type);
 
-        /*
-         * TYPE is used as a template to describe the file contents
-         */
-        newDataStore.createSchema(type);
-
-        Transaction transaction = new DefaultTransaction("create");
-
-        String typeName = newDataStore.getTypeNames()[0];
-        SimpleFeatureSource featureSource = newDataStore.getFeatureSource(typeName);
-        SimpleFeatureType SHAPE_TYPE = featureSource.getSchema();
-        /*
-         * The Shapefile format has a couple limitations:
-         * - "the_geom" is always first, and used for the geometry attribute name
-         * - "the_geom" must be of type Point, MultiPoint, MuiltiLineString, MultiPolygon
-         * - Attribute names are limited in length
-         * - Not all data types are supported (example Timestamp represented as Date)
-         *
-         * Each data store has different limitations so check the resulting SimpleFeatureType.
-         */
-        System.out.println("SHAPE:" + SHAPE_TYPE);
-
-        if (featureSource instanceof SimpleFeatureStore) {
-            SimpleFeatureStore featureStore = (SimpleFeatureStore) featureSource;
+            String typeName = newDataStore.getTypeNames()[0];
+            SimpleFeatureSource featureSource = newDataStore.getFeatureSource(typeName);
+            SimpleFeatureType SHAPE_TYPE = featureSource.getSchema();
             /*
-             * SimpleFeatureStore has a method to add features from a
-             * SimpleFeatureCollection object, so we use the ListFeatureCollection
-             * class to wrap our list of features.
+             * The Shapefile format has a couple limitations:
+             * - "the_geom" is always first, and used for the geometry attribute name
+             * - "the_geom" must be of type Point, MultiPoint, MuiltiLineString, MultiPolygon
+             * - Attribute names are limited in length
+             * - Not all data types are supported (example Timestamp represented as Date)
+             *
+             * Each data store has different limitations so check the resulting SimpleFeatureType.
              */
-            featureStore.setTransaction(transaction);
-            try {
-                featureStore.addFeatures(collection);
-                transaction.commit();
-            } catch (Exception problem) {
-                problem.printStackTrace();
-                transaction.rollback();
-            } finally {
-                transaction.close();
+            System.out.println("SHAPE:" + SHAPE_TYPE);
+
+            if (!(featureSource instanceof SimpleFeatureStore)) {
+                throw new IOException(typeName + " does not support read/write access");
             }
-            System.exit(0); // success!
-        } else {
-            System.out.println(typeName + " does not support read/write access");
-            System.exit(1);
+            SimpleFeatureStore featureStore = (SimpleFeatureStore) featureSource;
+            /*
+             * The collection may be a lazy BufferedFeatureCollection, so features
+             * are streamed into the store instead of being collected first.
+             */
+            return FeatureStoreSink.write(collection, featureStore);
+        } finally {
+            newDataStore.dispose();
         }
     }
 
     public static void main(String[] args) throws IOException, FactoryException, SchemaException {
         System.setProperty("org.geotools.referencing.forceXY", "true");
 
+        //headless batch mode when arguments are given
+        if (args.length > 0) {
+            System.exit(BatchRunner.run(args));
+        }
+
         //choose data input (file or generated data)
         boolean fromFile = chooseDataInput();
 
@@ -188,38 +182,69 @@ public class Main {
         //create style for buffered features
         Style style = createStyleForBufferedFeatures();
 
-        //buffer features
-        SimpleFeatureCollection bufferedFeatures = null, bufferedFeatures2 = null;
-        SimpleFeatureType schema;
-        if(fromFile){
-            schema = featureSource.getSchema();
-        }
-        else{
-            schema = randomDataGenerator.featureType;
-        }
-
-        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
-        builder.init(schema);
-        builder.remove("the_geom");
-        builder.add("the_geom", Polygon.class);
-        schema = builder.buildFeatureType();
-
-        bufferedFeatures = new ListFeatureCollection(schema, bufferFeatures(features, bufferDistance));
+        //buffer features in sessions that keep the projected geometries, so a new distance only re-buffers them
+        List<BufferSession> sessions = new ArrayList<>();
+        sessions.add(new BufferSession(features, bufferDistance));
         if(!fromFile)
-            bufferedFeatures2 = new ListFeatureCollection(schema, bufferFeatures(pointFeatures, bufferDistance));
+            sessions.add(new BufferSession(pointFeatures, bufferDistance));
 
-        //exportToShapefile(bufferedFeatures, schema);
+        //exportToShapefile(sessions.get(0).getFeatures(), sessions.get(0).getFeatures().getSchema());
 
-        //create layers
-        Layer layer = null, layer2 = null;
-        layer = new FeatureLayer(bufferedFeatures, style);
-        map.addLayer(layer);
-        if(!fromFile) {
-            layer2 = new FeatureLayer(bufferedFeatures2, style);
-            map.addLayer(layer2);
+        //create layers, buffered features are put into an indexed source with generalized levels
+        //so a repaint only draws the features in view, at the detail of the current scale
+        List<Layer> layers = new ArrayList<>();
+        for (BufferSession session : sessions) {
+            Layer layer = new FeatureLayer(new IndexedBufferSource(session.getFeatures()), style);
+            layers.add(layer);
+            map.addLayer(layer);
         }
 
-        // Now display the map
-        JMapFrame.showMap(map);
+        // Now display the map, with a toolbar button to try another distance
+        JMapFrame frame = new JMapFrame(map);
+        frame.enableStatusBar(true);
+        frame.enableToolBar(true);
+        frame.initComponents();
+        frame.getToolBar().add(new JButton(new AbstractAction("Distance...") {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                String value = JOptionPane.showInputDialog(frame, "Enter buffering distance", sessions.get(0).getDistance());
+                if (value == null) return;
+                double distance = Double.parseDouble(value);
+                // re-buffer and index off the event dispatch thread, the layers are swapped back on it
+                setEnabled(false);
+                new SwingWorker<List<IndexedBufferSource>, Void>() {
+                    @Override
+                    protected List<IndexedBufferSource> doInBackground() {
+                        List<IndexedBufferSource> sources = new ArrayList<>(sessions.size());
+                        for (BufferSession session : sessions) {
+                            session.setDistance(distance);
+                            sources.add(new IndexedBufferSource(session.getFeatures()));
+                        }
+                        return sources;
+                    }
+
+                    @Override
+                    protected void done() {
+                        setEnabled(true);
+                        List<IndexedBufferSource> sources;
+                        try {
+                            sources = get();
+                        } catch (InterruptedException | ExecutionException ex) {
+                            JOptionPane.showMessageDialog(frame, "Buffering failed: " + ex.getCause(),
+                                    "Distance", JOptionPane.ERROR_MESSAGE);
+                            return;
+                        }
+                        for (int i = 0; i < sources.size(); i++) {
+                            map.removeLayer(layers.get(i));
+                            layers.set(i, new FeatureLayer(sources.get(i), style));
+                            map.addLayer(layers.get(i));
+                        }
+                    }
+                }.execute();
+            }
+        }));
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setSize(800, 600);
+        frame.setVisible(true);
     }
-}
\ No newline at end of file
+}
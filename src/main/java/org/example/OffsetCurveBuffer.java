@@ -0,0 +1,318 @@
+package org.example;
+
+import org.locationtech.jts.algorithm.locate.IndexedPointInAreaLocator;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateList;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineSegment;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Location;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.index.strtree.ItemDistance;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.jts.operation.distance.IndexedFacetDistance;
+import org.locationtech.jts.operation.overlayng.CoverageUnion;
+import org.locationtech.jts.operation.overlayng.OverlayNGRobust;
+import org.locationtech.jts.operation.polygonize.Polygonizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Buffer engine that walks every line or shell once and emits a single raw offset curve, with round
+ * joins and caps from the same circle template as the joint circles of the segment engine. Only that curve
+ * is noded; the faces it encloses are kept when they lie within the buffer distance of the input.
+ *
+ * Lines are walked forward and back as one closed loop, so the two ends become 180 degree turns and
+ * their joins are the round caps. Shells are walked clockwise so the left side is the outside.
+ *
+ * When the distance is large against the segment length, most of the raw curve lies deep inside the buffer
+ * and crosses itself O(n^2) times. As in the JTS BufferBuilder the input is first simplified by a fraction of
+ * the distance, and raw segments that lie inside the buffer of a single input segment are dropped before
+ * noding, so the noder only sees the curve near the final boundary.
+ */
+class OffsetCurveBuffer {
+    // input simplification tolerance as a fraction of the distance, capped by the chord error of the circles
+    private static final double SIMPLIFY_FACTOR = 0.01;
+    // raw segments that are not inside a single input segment's buffer are halved down to this fraction of
+    // a circle chord
+    private static final double MIN_PIECE = 1.0 / 8;
+
+    static Geometry bufferLines(List<double[]> parts, double distance, GeometryFactory factory, CircleTemplate circle, UnionMode unionMode) {
+        List<Geometry> buffers = new ArrayList<>(parts.size());
+        for (double[] part : parts) {
+            double[] vertices = VertexSimplifier.simplify(part, simplifyTolerance(distance, circle), false);
+            int n = vertices.length / 2;
+            if (n == 1) {
+                buffers.add(factory.createPolygon(circle.circle(vertices[0], vertices[1], distance)));
+                continue;
+            }
+            long start = Instrumentation.startStage();
+            CoordinateList curve = offsetLoop(vertices, lineLoop(n), distance, circle);
+            Instrumentation.endStage(BufferMetrics.Stage.PIECES, start);
+            Geometry source = factory.createLineString(new PackedCoordinateSequence.Double(vertices, 2, 0));
+            buffers.add(resolve(curve, source, distance, factory, circle));
+        }
+        return merge(buffers, factory, unionMode);
+    }
+
+    static Geometry bufferShells(List<double[]> shells, double distance, GeometryFactory factory, CircleTemplate circle, UnionMode unionMode) {
+        List<Geometry> buffers = new ArrayList<>(shells.size());
+        for (double[] shell : shells) {
+            double[] vertices = VertexSimplifier.simplify(shell, simplifyTolerance(distance, circle), true);
+            int n = vertices.length / 2;
+            if (n == 1) {
+                buffers.add(factory.createPolygon(circle.circle(vertices[0], vertices[1], distance)));
+                continue;
+            }
+            if (n == 2) {
+                buffers.add(bufferLines(Arrays.asList(vertices), distance, factory, circle, unionMode));
+                continue;
+            }
+            long start = Instrumentation.startStage();
+            CoordinateList curve = offsetLoop(vertices, ringLoop(vertices), distance, circle);
+            Instrumentation.endStage(BufferMetrics.Stage.PIECES, start);
+            double[] closed = Arrays.copyOf(vertices, vertices.length + 2);
+            closed[vertices.length] = vertices[0];
+            closed[vertices.length + 1] = vertices[1];
+            Geometry source = factory.createPolygon(new PackedCoordinateSequence.Double(closed, 2, 0));
+            buffers.add(resolve(curve, source, distance, factory, circle));
+        }
+        return merge(buffers, factory, unionMode);
+    }
+
+    // Below the sagitta of the circle template, so the simplification never moves the buffer by more than the
+    // circles already deviate from the exact distance
+    private static double simplifyTolerance(double distance, CircleTemplate circle) {
+        return Math.abs(distance) * Math.min(SIMPLIFY_FACTOR, 1 - Math.cos(circle.step / 2));
+    }
+
+    private static Geometry merge(List<Geometry> buffers, GeometryFactory factory, UnionMode unionMode) {
+        if (buffers.size() == 1) return buffers.get(0);
+        long start = Instrumentation.startStage();
+        Geometry union = PieceUnion.union(buffers, factory, unionMode);
+        Instrumentation.endStage(BufferMetrics.Stage.UNION, start);
+        return union;
+    }
+
+    // p0 .. pn-1 .. p1, closed back to p0
+    private static int[] lineLoop(int n) {
+        int[] loop = new int[2 * n - 2];
+        for (int k = 0; k < loop.length; k++) {
+            loop[k] = k < n ? k : 2 * n - 2 - k;
+        }
+        return loop;
+    }
+
+    // clockwise order, so that the left side of every edge is outside the shell
+    private static int[] ringLoop(double[] vertices) {
+        int n = vertices.length / 2;
+        double signedArea = 0;
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            signedArea += vertices[2 * i] * vertices[2 * j + 1] - vertices[2 * j] * vertices[2 * i + 1];
+        }
+        int[] loop = new int[n];
+        for (int k = 0; k < n; k++) {
+            loop[k] = signedArea > 0 ? n - 1 - k : k;
+        }
+        return loop;
+    }
+
+    // Offsets the closed loop to its left side, adding a clockwise arc at every convex or reversing join
+    // and a mitre or a chord at every concave one
+    private static CoordinateList offsetLoop(double[] vertices, int[] loop, double distance, CircleTemplate circle) {
+        int m = loop.length;
+        CoordinateList curve = new CoordinateList();
+
+        for (int k = 0; k < m; k++) {
+            int curr = loop[k], next = loop[(k + 1) % m];
+            double x = vertices[2 * curr], y = vertices[2 * curr + 1];
+            // a repeated vertex is joined once, at the last of its run, against the previous distinct vertex
+            if (vertices[2 * next] == x && vertices[2 * next + 1] == y) continue;
+            int back = 1;
+            while (back < m && vertices[2 * loop[(k + m - back) % m]] == x && vertices[2 * loop[(k + m - back) % m] + 1] == y) {
+                back++;
+            }
+            int prev = loop[(k + m - back) % m];
+
+            double inX = x - vertices[2 * prev], inY = y - vertices[2 * prev + 1];
+            double inLength = Math.hypot(inX, inY);
+            inX /= inLength;
+            inY /= inLength;
+            double outX = vertices[2 * next] - x, outY = vertices[2 * next + 1] - y;
+            double outLength = Math.hypot(outX, outY);
+            outX /= outLength;
+            outY /= outLength;
+
+            // left normals of the incoming and outgoing edge
+            double inNormalX = -inY, inNormalY = inX;
+            double outNormalX = -outY, outNormalY = outX;
+
+            double cross = inX * outY - inY * outX;
+            double dot = inX * outX + inY * outY;
+
+            if (cross > 0) {
+                // concave join: the offset segments meet at the mitre point when it lies on both of them,
+                // otherwise their ends are joined by a chord of the joint circle, which lies inside the buffer.
+                // Going through the vertex instead would add a loop that only crosses more of the curve.
+                double shift = distance * cross / (1 + dot);
+                if (shift <= inLength && shift <= outLength) {
+                    double scale = distance / (1 + dot);
+                    curve.add(new Coordinate(x + scale * (inNormalX + outNormalX), y + scale * (inNormalY + outNormalY)), false);
+                } else {
+                    curve.add(new Coordinate(x + distance * inNormalX, y + distance * inNormalY), false);
+                    curve.add(new Coordinate(x + distance * outNormalX, y + distance * outNormalY), false);
+                }
+                continue;
+            }
+
+            curve.add(new Coordinate(x + distance * inNormalX, y + distance * inNormalY), false);
+            if (cross == 0 && dot > 0) {
+                continue;
+            }
+            addArc(curve, x, y, distance, Math.atan2(inNormalY, inNormalX), Math.atan2(outNormalY, outNormalX), circle);
+            curve.add(new Coordinate(x + distance * outNormalX, y + distance * outNormalY), false);
+        }
+        curve.closeRing();
+        return curve;
+    }
+
+    // Adds the circle grid points strictly between the two angles, going clockwise
+    private static void addArc(CoordinateList curve, double x, double y, double distance,
+                               double startAngle, double endAngle, CircleTemplate circle) {
+        if (!Double.isFinite(startAngle) || !Double.isFinite(endAngle)) {
+            throw new IllegalArgumentException("non-finite join angle at " + x + " " + y);
+        }
+        double step = circle.step;
+        double sweep = startAngle - endAngle;
+        while (sweep <= 0) sweep += 2 * Math.PI;
+        double tolerance = 1e-9 * step;
+
+        for (int j = (int) Math.floor(startAngle / step); ; j--) {
+            double swept = startAngle - j * step;
+            if (swept <= tolerance) continue;
+            if (swept >= sweep - tolerance) break;
+            curve.add(new Coordinate(x + distance * circle.cos(j), y + distance * circle.sin(j)), false);
+        }
+    }
+
+    // Nodes the raw curve and keeps the faces that lie within the buffer distance of the source.
+    // The faces share their noded edges exactly, so they are merged with a coverage union.
+    private static Geometry resolve(CoordinateList curve, Geometry source, double distance, GeometryFactory factory, CircleTemplate circle) {
+        long start = Instrumentation.startStage();
+        Geometry resolved = resolveFaces(curve, source, distance, factory, circle);
+        Instrumentation.endStage(BufferMetrics.Stage.UNION, start);
+        return resolved;
+    }
+
+    private static Geometry resolveFaces(CoordinateList curve, Geometry source, double distance, GeometryFactory factory, CircleTemplate circle) {
+        Instrumentation.countOverlays(1);
+        Geometry noded = OverlayNGRobust.union(boundaryCandidates(curve, source, distance, factory, circle));
+        Polygonizer polygonizer = new Polygonizer();
+        polygonizer.add(noded);
+
+        IndexedFacetDistance facetDistance = new IndexedFacetDistance(source);
+        IndexedPointInAreaLocator locator = source instanceof Polygon ? new IndexedPointInAreaLocator(source) : null;
+
+        List<Polygon> faces = new ArrayList<>();
+        for (Object face : polygonizer.getPolygons()) {
+            Polygon polygon = (Polygon) face;
+            Point interiorPoint = polygon.getInteriorPoint();
+            if ((locator != null && locator.locate(interiorPoint.getCoordinate()) != Location.EXTERIOR)
+                    || facetDistance.isWithinDistance(interiorPoint, distance)) {
+                faces.add(polygon);
+            }
+        }
+        if (faces.isEmpty()) return factory.createPolygon();
+        if (faces.size() == 1) return faces.get(0);
+        Instrumentation.countOverlays(1);
+        return CoverageUnion.union(factory.createMultiPolygon(faces.toArray(new Polygon[0])));
+    }
+
+    // The runs of the raw curve that may lie on the buffer boundary. The distance to a segment is convex along
+    // a line, so a raw segment whose two ends are closer than the inradius of the circle polygons to the same
+    // input segment lies inside that segment's buffer piece and never on the boundary. Only the input segment
+    // nearest to the midpoint is tested; a segment that fails is halved down to a fraction of a circle chord,
+    // so that only short pieces close to the final boundary are left for the noder.
+    private static Geometry boundaryCandidates(CoordinateList curve, Geometry source, double distance, GeometryFactory factory, CircleTemplate circle) {
+        Coordinate[] coords = source instanceof Polygon
+                ? ((Polygon) source).getExteriorRing().getCoordinates()
+                : source.getCoordinates();
+        STRtree segments = new STRtree();
+        for (int i = 0; i < coords.length - 1; i++) {
+            segments.insert(new Envelope(coords[i], coords[i + 1]), new LineSegment(coords[i], coords[i + 1]));
+        }
+        double inside = Math.abs(distance) * Math.cos(circle.step / 2) * (1 - 1e-9);
+        double minPiece = 2 * Math.abs(distance) * Math.sin(circle.step / 2) * MIN_PIECE;
+        Runs runs = new Runs(segments, inside, minPiece);
+        for (int i = 0; i < curve.size() - 1; i++) {
+            runs.add(curve.getCoordinate(i), curve.getCoordinate(i + 1));
+        }
+        return factory.createMultiLineString(runs.finish(factory));
+    }
+
+    private static class Runs {
+        private static final ItemDistance SEGMENT_DISTANCE =
+                (a, b) -> ((LineSegment) a.getItem()).distance((LineSegment) b.getItem());
+
+        private final STRtree segments;
+        private final double inside;
+        private final double minPiece;
+        private final List<Coordinate[]> runs = new ArrayList<>();
+        private CoordinateList run = new CoordinateList();
+        // the run ends at a point where a raw segment was halved
+        private boolean endsAtSplit;
+
+        Runs(STRtree segments, double inside, double minPiece) {
+            this.segments = segments;
+            this.inside = inside;
+            this.minPiece = minPiece;
+        }
+
+        void add(Coordinate p, Coordinate q) {
+            add(p, q, false);
+        }
+
+        // Only a segment whose middle is inside the buffer is halved, one along the boundary is kept whole.
+        // Kept halves of the same raw segment are joined again, so the output has no extra collinear vertices.
+        private void add(Coordinate p, Coordinate q, boolean split) {
+            Coordinate middle = new Coordinate((p.x + q.x) / 2, (p.y + q.y) / 2);
+            LineSegment nearest = (LineSegment) segments.nearestNeighbour(new Envelope(middle), new LineSegment(middle, middle), SEGMENT_DISTANCE);
+            if (nearest != null && nearest.distance(p) < inside && nearest.distance(q) < inside) {
+                endRun();
+            } else if (nearest != null && nearest.distance(middle) < inside && p.distance(q) > minPiece) {
+                add(p, middle, true);
+                add(middle, q, split);
+            } else {
+                if (run.isEmpty()) {
+                    run.add(p, false);
+                } else if (endsAtSplit) {
+                    run.remove(run.size() - 1);
+                }
+                run.add(q, false);
+                endsAtSplit = split;
+            }
+        }
+
+        private void endRun() {
+            if (run.size() > 1) runs.add(run.toCoordinateArray());
+            run = new CoordinateList();
+            endsAtSplit = false;
+        }
+
+        LineString[] finish(GeometryFactory factory) {
+            endRun();
+            LineString[] lines = new LineString[runs.size()];
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = factory.createLineString(runs.get(i));
+            }
+            return lines;
+        }
+    }
+}
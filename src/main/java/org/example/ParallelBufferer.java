@@ -0,0 +1,175 @@
+package org.example;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.filter.expression.Expression;
+import org.geotools.api.referencing.FactoryException;
+import org.geotools.api.referencing.operation.TransformException;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Buffers features on a fork-join pool. Features are read from the iterator in batches, each batch
+ * is buffered concurrently and the results are returned in input order. Projection and geometry failures
+ * are collected per feature instead of aborting the run.
+ */
+public class ParallelBufferer implements AutoCloseable {
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    public static class Failure {
+        public final SimpleFeature feature;
+        public final Exception exception;
+
+        Failure(SimpleFeature feature, Exception exception) {
+            this.feature = feature;
+            this.exception = exception;
+        }
+    }
+
+    // The buffered features in input order and the features that could not be buffered
+    public static class Result {
+        public final List<SimpleFeature> features;
+        public final List<Failure> failures;
+
+        Result(List<SimpleFeature> features, List<Failure> failures) {
+            this.features = features;
+            this.failures = failures;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int batchSize;
+    private final List<Failure> failures = Collections.synchronizedList(new ArrayList<>());
+
+    public ParallelBufferer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelBufferer(int threads) {
+        this(threads, DEFAULT_BATCH_SIZE);
+    }
+
+    public ParallelBufferer(int threads, int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be positive");
+        this.pool = new ForkJoinPool(threads);
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public List<SimpleFeature> bufferFeatures(SimpleFeatureCollection features, double bufferDistance) {
+        return bufferFeatures(features, batch -> bufferBatch(batch, bufferDistance));
+    }
+
+    public List<SimpleFeature> bufferFeatures(SimpleFeatureCollection features, Expression bufferDistance) {
+        return bufferFeatures(features, batch -> bufferBatch(batch, bufferDistance));
+    }
+
+    private List<SimpleFeature> bufferFeatures(SimpleFeatureCollection features, Function<List<SimpleFeature>, List<SimpleFeature>> bufferBatch) {
+        List<SimpleFeature> bufferedFeaturesList = new ArrayList<>();
+        List<SimpleFeature> batch = new ArrayList<>(batchSize);
+
+        SimpleFeatureIterator iterator = features.features();
+        try {
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == batchSize) {
+                    bufferedFeaturesList.addAll(bufferBatch.apply(batch));
+                    batch.clear();
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+        if (!batch.isEmpty()) {
+            bufferedFeaturesList.addAll(bufferBatch.apply(batch));
+        }
+
+        return bufferedFeaturesList;
+    }
+
+    // Buffers one batch concurrently. Failed features are recorded and left out of the result.
+    public List<SimpleFeature> bufferBatch(List<SimpleFeature> batch, double bufferDistance) {
+        return bufferBatch(batch, bufferDistance, failures);
+    }
+
+    // as above, with the failures of this batch recorded in the given list instead
+    List<SimpleFeature> bufferBatch(List<SimpleFeature> batch, double bufferDistance, List<Failure> failures) {
+        List<Callable<SimpleFeature>> tasks = new ArrayList<>(batch.size());
+        for (SimpleFeature feature : batch) {
+            tasks.add(() -> bufferOne(feature, bufferDistance, failures));
+        }
+        return invoke(tasks);
+    }
+
+    // Buffers one batch with a distance per feature. The distances are evaluated on the calling thread and
+    // the tasks are submitted in input order; circle templates and projections are cached, so a batch with
+    // many distances costs no more than one with a single distance.
+    public List<SimpleFeature> bufferBatch(List<SimpleFeature> batch, Expression bufferDistance) {
+        return bufferBatch(batch, bufferDistance, failures);
+    }
+
+    List<SimpleFeature> bufferBatch(List<SimpleFeature> batch, Expression bufferDistance, List<Failure> failures) {
+        List<Callable<SimpleFeature>> tasks = new ArrayList<>(batch.size());
+        for (SimpleFeature feature : batch) {
+            double distance;
+            try {
+                distance = BufferFactory.distanceOf(feature, bufferDistance);
+            } catch (IllegalArgumentException e) {
+                failures.add(new Failure(feature, e));
+                continue;
+            }
+            tasks.add(() -> bufferOne(feature, distance, failures));
+        }
+        return invoke(tasks);
+    }
+
+    // Runs the tasks on the pool and returns their non-null results in task order
+    private List<SimpleFeature> invoke(List<Callable<SimpleFeature>> tasks) {
+        List<SimpleFeature> result = new ArrayList<>(tasks.size());
+        for (Future<SimpleFeature> future : pool.invokeAll(tasks)) {
+            try {
+                SimpleFeature buffered = future.get();
+                if (buffered != null) {
+                    result.add(buffered);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        return result;
+    }
+
+    private static SimpleFeature bufferOne(SimpleFeature feature, double bufferDistance, List<Failure> failures) {
+        try {
+            return BufferFactory.bufferFeature(feature, bufferDistance);
+        } catch (FactoryException | TransformException | RuntimeException e) {
+            failures.add(new Failure(feature, e));
+            return null;
+        }
+    }
+
+    public List<Failure> getFailures() {
+        synchronized (failures) {
+            return new ArrayList<>(failures);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,103 @@
+package org.example;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.operation.overlayng.OverlayNG;
+import org.locationtech.jts.operation.overlayng.UnaryUnionNG;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Unions the segment and joint polygons produced by the buffer engines. Pieces are produced in
+ * vertex order, so neighbouring pieces overlap the most; the tree mode exploits that by merging
+ * small blocks of consecutive pieces first and combining the partial results level by level.
+ *
+ * With a fixed precision model every overlay runs through OverlayNG with snap-rounding: the pieces are
+ * rounded to the precision grid, which removes the nearly coincident edges floating overlay struggles with.
+ */
+class PieceUnion {
+    static final int BLOCK_SIZE = 16;
+
+    static Geometry union(List<? extends Geometry> pieces, GeometryFactory factory, UnionMode mode) {
+        return union(pieces, factory, mode, null);
+    }
+
+    // precision null keeps the floating precision overlay
+    static Geometry union(List<? extends Geometry> pieces, GeometryFactory factory, UnionMode mode, PrecisionModel precision) {
+        Instrumentation.countOverlays(overlayCount(pieces.size(), mode));
+        if (mode == UnionMode.GLOBAL) {
+            return unionAll(factory.createGeometryCollection(pieces.toArray(new Geometry[0])), precision);
+        }
+        return unionRange(pieces, 0, pieces.size(), factory, precision);
+    }
+
+    private static Geometry unionAll(Geometry collection, PrecisionModel precision) {
+        return precision == null ? collection.union() : UnaryUnionNG.union(collection, precision);
+    }
+
+    private static Geometry union(Geometry a, Geometry b, PrecisionModel precision) {
+        return precision == null ? a.union(b) : OverlayNG.overlay(a, b, OverlayNG.UNION, precision);
+    }
+
+    // Number of union calls the given mode issues for that many pieces, one cascaded union for GLOBAL
+    static int overlayCount(int pieces, UnionMode mode) {
+        if (mode == UnionMode.GLOBAL || pieces <= BLOCK_SIZE) return 1;
+        int middle = pieces >>> 1;
+        return overlayCount(middle, mode) + overlayCount(pieces - middle, mode) + 1;
+    }
+
+    private static Geometry unionRange(List<? extends Geometry> pieces, int from, int to, GeometryFactory factory, PrecisionModel precision) {
+        if (to - from <= BLOCK_SIZE) {
+            return unionAll(factory.createGeometryCollection(pieces.subList(from, to).toArray(new Geometry[0])), precision);
+        }
+        int middle = (from + to) >>> 1;
+        Geometry left = unionRange(pieces, from, middle, factory, precision);
+        Geometry right = unionRange(pieces, middle, to, factory, precision);
+        return union(left, right, precision);
+    }
+
+    // Same tree as unionRange, with the two halves of every level unioned concurrently on the pool
+    static Geometry parallelUnion(List<? extends Geometry> pieces, GeometryFactory factory, ForkJoinPool pool, int leafSize) {
+        return parallelUnion(pieces, factory, pool, leafSize, null);
+    }
+
+    static Geometry parallelUnion(List<? extends Geometry> pieces, GeometryFactory factory, ForkJoinPool pool, int leafSize, PrecisionModel precision) {
+        Instrumentation.countOverlays(overlayCount(pieces.size(), UnionMode.SEQUENTIAL_TREE));
+        return pool.invoke(new UnionTask(pieces, 0, pieces.size(), factory, leafSize, precision));
+    }
+
+    private static class UnionTask extends RecursiveTask<Geometry> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends Geometry> pieces;
+        private final int from;
+        private final int to;
+        private final GeometryFactory factory;
+        private final int leafSize;
+        private final PrecisionModel precision;
+
+        UnionTask(List<? extends Geometry> pieces, int from, int to, GeometryFactory factory, int leafSize, PrecisionModel precision) {
+            this.pieces = pieces;
+            this.from = from;
+            this.to = to;
+            this.factory = factory;
+            this.leafSize = leafSize;
+            this.precision = precision;
+        }
+
+        @Override
+        protected Geometry compute() {
+            if (to - from <= leafSize) {
+                return unionRange(pieces, from, to, factory, precision);
+            }
+            int middle = (from + to) >>> 1;
+            UnionTask left = new UnionTask(pieces, from, middle, factory, leafSize, precision);
+            left.fork();
+            Geometry right = new UnionTask(pieces, middle, to, factory, leafSize, precision).compute();
+            return union(left.join(), right, precision);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.example;
+
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.util.List;
+
+/**
+ * A geometry in projected units, already split into the packed vertex parts the buffer engines work on.
+ * It can be buffered at any number of distances without projecting or extracting vertices again.
+ */
+class ProjectedGeometry {
+    enum Type { POINT, LINES, SHELLS }
+
+    final Type type;
+    final List<double[]> parts;
+    final GeometryFactory factory;
+
+    ProjectedGeometry(Type type, List<double[]> parts, GeometryFactory factory) {
+        this.type = type;
+        this.parts = parts;
+        this.factory = factory;
+    }
+
+    int getNumVertices() {
+        int count = 0;
+        for (double[] part : parts) {
+            count += part.length / 2;
+        }
+        return count;
+    }
+}
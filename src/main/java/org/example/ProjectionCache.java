@@ -0,0 +1,110 @@
+package org.example;
+
+import org.geotools.api.referencing.FactoryException;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.api.referencing.operation.MathTransform;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of AUTO:42001 projections. AUTO:42001 only looks at the UTM zone (central meridian) and the
+ * hemisphere of the point it is given, so centroids are keyed by exactly those two and every feature in a zone
+ * shares one CRS decode and one pair of math transforms, with the same result as decoding its own centroid.
+ */
+public class ProjectionCache {
+
+    public static class Projection {
+        public final CoordinateReferenceSystem crs;
+        public final MathTransform toProjected;
+        public final MathTransform fromProjected;
+
+        Projection(CoordinateReferenceSystem crs, MathTransform toProjected, MathTransform fromProjected) {
+            this.crs = crs;
+            this.toProjected = toProjected;
+            this.fromProjected = fromProjected;
+        }
+    }
+
+    private final Map<String, Projection> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ProjectionCache(int maxEntries) {
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be positive");
+        this.entries = new LinkedHashMap<String, Projection>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Projection> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static Projection createProjection(double x, double y) throws FactoryException {
+        return decode("AUTO:42001," + x + "," + y);
+    }
+
+    private static Projection decode(String code) throws FactoryException {
+        CoordinateReferenceSystem auto = CRS.decode(code);
+        MathTransform toTransform = CRS.findMathTransform(DefaultGeographicCRS.WGS84, auto);
+        MathTransform fromTransform = CRS.findMathTransform(auto, DefaultGeographicCRS.WGS84);
+        return new Projection(auto, toTransform, fromTransform);
+    }
+
+    public Projection get(double x, double y) throws FactoryException {
+        String code = snap(x, y);
+        synchronized (entries) {
+            Projection projection = entries.get(code);
+            if (projection != null) {
+                hits.incrementAndGet();
+                return projection;
+            }
+        }
+        misses.incrementAndGet();
+
+        // decode outside the lock, a concurrent miss on the same key just does the work twice
+        Projection projection = decode(code);
+        synchronized (entries) {
+            Projection existing = entries.putIfAbsent(code, projection);
+            return existing != null ? existing : projection;
+        }
+    }
+
+    // AUTO:42001 code of the central meridian of the UTM zone and the hemisphere of this point
+    static String snap(double x, double y) {
+        double zone = Math.min(Math.floor((x + 180.0) / 6.0) + 1, 60);
+        double centralMeridian = -183.0 + zone * 6.0;
+        return "AUTO:42001," + centralMeridian + "," + (y >= 0 ? 0.0 : -1.0);
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+}
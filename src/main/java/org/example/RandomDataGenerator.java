@@ -1,61 +1,231 @@
 package org.example;
 
+import org.geotools.api.data.SimpleFeatureStore;
 import org.geotools.api.feature.simple.SimpleFeature;
 import org.geotools.api.feature.simple.SimpleFeatureType;
 import org.geotools.api.referencing.FactoryException;
 import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.collection.BaseSimpleFeatureCollection;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.referencing.CRS;
 import org.locationtech.jts.geom.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Seeded generator of random points, lines and polygons. Every feature is derived from the seed and its
+ * index only, so the output is reproducible and the same no matter how many threads produce it.
+ * Polygons are star-shaped around their centre, which makes them valid by construction.
+ */
 public class RandomDataGenerator {
     private static final String EPSG4326 = "GEOGCS[\"WGS 84\",DATUM[\"WGS_1984\",SPHEROID[\"WGS 84\",6378137,298.257223563,AUTHORITY[\"EPSG\",\"7030\"]],AUTHORITY[\"EPSG\",\"6326\"]],PRIMEM[\"Greenwich\",0,AUTHORITY[\"EPSG\",\"8901\"]],UNIT[\"degree\",0.01745329251994328,AUTHORITY[\"EPSG\",\"9122\"]],AUTHORITY[\"EPSG\",\"4326\"]]";
+    private static final int STREAM_BATCH_SIZE = 4096;
+
+    public enum Kind { POINT, LINE, POLYGON }
+
+    public interface VertexCountDistribution {
+        int sample(SplittableRandom random);
+
+        static VertexCountDistribution fixed(int count) {
+            return random -> count;
+        }
+
+        static VertexCountDistribution uniform(int min, int max) {
+            return random -> min + random.nextInt(max - min + 1);
+        }
+
+        // heavy-tailed counts, as found in real hydrography or boundary layers
+        static VertexCountDistribution logNormal(double median, double sigma, int min, int max) {
+            return random -> {
+                double gaussian = Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+                long count = Math.round(median * Math.exp(sigma * gaussian));
+                return (int) Math.max(min, Math.min(max, count));
+            };
+        }
+    }
+
     CoordinateReferenceSystem worldCRS = CRS.parseWKT(EPSG4326);
-    public SimpleFeatureType featureType;
-    public SimpleFeatureBuilder featureBuilder;
+    public final SimpleFeatureType featureType;
+    private final ThreadLocal<SimpleFeatureBuilder> featureBuilder;
     private final GeometryFactory geometryFactory;
+    private final long seed;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile Envelope extent = new Envelope(0, 45, 0, 25);
+    private volatile double maxStep = 5.0;
+    private volatile double polygonRadius = 5.0;
+    private volatile VertexCountDistribution lineVertices = VertexCountDistribution.uniform(4, 6);
+    private volatile VertexCountDistribution polygonVertices = VertexCountDistribution.uniform(4, 8);
+    private volatile double[] clusterCentres = new double[0];
+    private volatile double clusterSigma;
 
     public RandomDataGenerator() throws FactoryException {
+        this(new SplittableRandom().nextLong());
+    }
+
+    // the same seed always produces the same sequence of features
+    public RandomDataGenerator(long seed) throws FactoryException {
+        this.seed = seed;
         SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
         builder.setName("CustomFeatureType");
         builder.setCRS(worldCRS);
         builder.add("the_geom", Geometry.class);
         featureType = builder.buildFeatureType();
 
-        featureBuilder = new SimpleFeatureBuilder(featureType);
+        featureBuilder = ThreadLocal.withInitial(() -> new SimpleFeatureBuilder(featureType));
         geometryFactory = new GeometryFactory();
     }
 
-    public SimpleFeature createPointFeature() {
-        double latitude = (Math.random() * 25.0);
-        double longitude = (Math.random() * 45.0);
-        Point point = this.geometryFactory.createPoint(new Coordinate(longitude, latitude));
+    public void setExtent(Envelope extent) {
+        this.extent = new Envelope(extent);
+    }
+
+    // largest longitude/latitude step between two line vertices, in degrees
+    public void setMaxStep(double maxStep) {
+        this.maxStep = maxStep;
+    }
+
+    // largest distance of a polygon vertex from the polygon centre, in degrees
+    public void setPolygonRadius(double polygonRadius) {
+        this.polygonRadius = polygonRadius;
+    }
+
+    public void setLineVertices(VertexCountDistribution lineVertices) {
+        this.lineVertices = lineVertices;
+    }
 
-        this.featureBuilder.set("the_geom", point);
-        return this.featureBuilder.buildFeature(null);
+    // number of polygon coordinates including the closing one
+    public void setPolygonVertices(VertexCountDistribution polygonVertices) {
+        this.polygonVertices = polygonVertices;
+    }
+
+    // Concentrates features around clusterCount seeded centres with a gaussian spread of sigma degrees.
+    // A count of 0 spreads them uniformly over the extent.
+    public void setClusters(int clusterCount, double sigma) {
+        SplittableRandom random = randomFor(-1);
+        double[] centres = new double[2 * clusterCount];
+        for (int i = 0; i < clusterCount; i++) {
+            centres[2 * i] = extent.getMinX() + random.nextDouble() * extent.getWidth();
+            centres[2 * i + 1] = extent.getMinY() + random.nextDouble() * extent.getHeight();
+        }
+        this.clusterSigma = sigma;
+        this.clusterCentres = centres;
+    }
+
+    public SimpleFeature createPointFeature() {
+        return createFeature(Kind.POINT, sequence.getAndIncrement());
     }
 
     public SimpleFeature createLineFeature() {
-        int n = (int) ((Math.random() * 3) + 4);
-        LineString line = createRandomLineString(n);
-        this.featureBuilder.set("the_geom", line);
+        return createFeature(Kind.LINE, sequence.getAndIncrement());
+    }
+
+    public SimpleFeature createPolygonFeature() {
+        return createFeature(Kind.POLYGON, sequence.getAndIncrement());
+    }
+
+    public SimpleFeature createFeature(Kind kind, long index) {
+        SplittableRandom random = randomFor(index);
+        Geometry geometry;
+        switch (kind) {
+            case POINT:
+                geometry = this.geometryFactory.createPoint(randomLocation(random));
+                break;
+            case LINE:
+                geometry = createRandomLineString(random, lineVertices.sample(random));
+                break;
+            default:
+                geometry = createRandomPolygon(random, polygonVertices.sample(random));
+        }
 
-        return this.featureBuilder.buildFeature(null);
+        SimpleFeatureBuilder builder = this.featureBuilder.get();
+        builder.set("the_geom", geometry);
+        return builder.buildFeature(featureType.getTypeName() + "." + index);
+    }
+
+    // Generates count features in parallel, in index order
+    public List<SimpleFeature> createFeatures(Kind kind, int count) {
+        long first = sequence.getAndAdd(count);
+        return LongStream.range(first, first + count)
+                .parallel()
+                .mapToObj(index -> createFeature(kind, index))
+                .collect(Collectors.toList());
+    }
+
+    // Lazy collection of count features, generated in parallel batches while it is iterated
+    public SimpleFeatureCollection features(Kind kind, long count) {
+        long first = sequence.getAndAdd(count);
+        return new BaseSimpleFeatureCollection(featureType) {
+            @Override
+            public SimpleFeatureIterator features() {
+                return new GeneratingIterator(kind, first, first + count);
+            }
+
+            @Override
+            public int size() {
+                return (int) Math.min(Integer.MAX_VALUE, count);
+            }
+        };
+    }
+
+    public void writeShapefile(Kind kind, long count, File file) throws IOException {
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.init(featureType);
+        builder.remove("the_geom");
+        builder.add("the_geom", kind == Kind.POINT ? Point.class : kind == Kind.LINE ? LineString.class : Polygon.class);
+        SimpleFeatureType type = builder.buildFeatureType();
+
+        Map<String, Serializable> params = new HashMap<>();
+        params.put("url", file.toURI().toURL());
+        params.put("create spatial index", Boolean.TRUE);
+        ShapefileDataStore store = (ShapefileDataStore) new ShapefileDataStoreFactory().createNewDataStore(params);
+        try {
+            store.createSchema(type);
+            // the store stays on AUTO_COMMIT: a shapefile transaction would hold every feature until commit
+            SimpleFeatureStore featureStore = (SimpleFeatureStore) store.getFeatureSource(store.getTypeNames()[0]);
+            FeatureStoreSink.write(features(kind, count), featureStore);
+        } finally {
+            store.dispose();
+        }
     }
 
     public LineString createRandomLineString(int n) {
-        double latitude = (Math.random() * 25.0);
-        double longitude = (Math.random() * 45.0);
+        return createRandomLineString(randomFor(sequence.getAndIncrement()), n);
+    }
+
+    public Polygon createRandomPolygon(int n) {
+        return createRandomPolygon(randomFor(sequence.getAndIncrement()), n);
+    }
+
+    private LineString createRandomLineString(SplittableRandom random, int n) {
+        Coordinate start = randomLocation(random);
+        double longitude = start.x;
+        double latitude = start.y;
 
         Coordinate[] coords = new Coordinate[n];
-        coords[0] = new Coordinate(longitude, latitude);
+        coords[0] = start;
 
         for (int i = 1; i < n; i++) {
-            double deltaX = (Math.random() * 5.0);
-            double deltaY = (Math.random() * 5.0);
+            double deltaX = (random.nextDouble() * maxStep);
+            double deltaY = (random.nextDouble() * maxStep);
             longitude += deltaX;
-            if(Math.random() > 0.5) latitude -= deltaY;
+            if(random.nextBoolean()) latitude -= deltaY;
             else latitude += deltaY;
             coords[i] = new Coordinate(longitude, latitude);
         }
@@ -63,41 +233,85 @@ public class RandomDataGenerator {
         return this.geometryFactory.createLineString(coords);
     }
 
-    public SimpleFeature createPolygonFeature() {
-        int n = (int) ((Math.random() * 5) + 4);
-        Polygon poly = createRandomPolygon(n);
-        this.featureBuilder.add(poly);
+    // Vertices at increasing angles around the centre, each at a random radius: a star-shaped,
+    // and therefore simple, ring of n coordinates including the closing one
+    private Polygon createRandomPolygon(SplittableRandom random, int n) {
+        Coordinate centre = randomLocation(random);
+        int vertices = Math.max(3, n - 1);
+        double angleStep = 2 * Math.PI / vertices;
+
+        Coordinate[] coords = new Coordinate[vertices + 1];
+        for (int i = 0; i < vertices; i++) {
+            double angle = angleStep * (i + 0.8 * random.nextDouble());
+            double radius = polygonRadius * (0.3 + 0.7 * random.nextDouble());
+            coords[i] = new Coordinate(centre.x + radius * Math.cos(angle), centre.y + radius * Math.sin(angle));
+        }
+        coords[vertices] = new Coordinate(coords[0]);
+
+        return this.geometryFactory.createPolygon(coords);
+    }
 
-        return this.featureBuilder.buildFeature(null);
+    private Coordinate randomLocation(SplittableRandom random) {
+        Envelope bounds = extent;
+        double[] centres = clusterCentres;
+        if (centres.length == 0) {
+            return new Coordinate(bounds.getMinX() + random.nextDouble() * bounds.getWidth(),
+                    bounds.getMinY() + random.nextDouble() * bounds.getHeight());
+        }
+        int cluster = random.nextInt(centres.length / 2);
+        double x = centres[2 * cluster] + clusterSigma * gaussian(random);
+        double y = centres[2 * cluster + 1] + clusterSigma * gaussian(random);
+        return new Coordinate(Math.max(bounds.getMinX(), Math.min(bounds.getMaxX(), x)),
+                Math.max(bounds.getMinY(), Math.min(bounds.getMaxY(), y)));
     }
 
+    private static double gaussian(SplittableRandom random) {
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
 
-    public Polygon createRandomPolygon(int n) {
-        double startingLatitude = (Math.random() * 25.0);
-        double startingLongitude = (Math.random() * 45.0);
-
-        Polygon poly = null;
-        boolean isValid = false;
-        while (!isValid) {
-            Coordinate[] coords = new Coordinate[n];
-            coords[0] = new Coordinate(startingLongitude, startingLatitude);
-
-            double longitude = startingLongitude;
-            double latitude = startingLatitude;
-
-            for (int i = 1; i < n - 1; i++) {
-                double deltaX = (Math.random() * 5.0);
-                double deltaY = (Math.random() * 5.0);
-                longitude += deltaX;
-                if(i > n/2) latitude -= deltaY;
-                else latitude += deltaY;
-                coords[i] = new Coordinate(longitude, latitude);
+    // independent stream per feature index (SplitMix64 finalizer over seed and index)
+    private SplittableRandom randomFor(long index) {
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new SplittableRandom(z ^ (z >>> 31));
+    }
+
+    private class GeneratingIterator implements SimpleFeatureIterator {
+        private final Kind kind;
+        private final long end;
+        private long next;
+        private List<SimpleFeature> batch = Collections.emptyList();
+        private int index;
+
+        GeneratingIterator(Kind kind, long start, long end) {
+            this.kind = kind;
+            this.next = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < batch.size() || next < end;
+        }
+
+        @Override
+        public SimpleFeature next() {
+            if (index >= batch.size()) {
+                if (next >= end) throw new NoSuchElementException();
+                long batchEnd = Math.min(end, next + STREAM_BATCH_SIZE);
+                batch = LongStream.range(next, batchEnd)
+                        .parallel()
+                        .mapToObj(i -> createFeature(kind, i))
+                        .collect(Collectors.toList());
+                next = batchEnd;
+                index = 0;
             }
-            coords[n-1] = new Coordinate(startingLongitude, startingLatitude);
+            return batch.get(index++);
+        }
 
-            poly = this.geometryFactory.createPolygon(coords);
-            isValid = poly.isValid();
+        @Override
+        public void close() {
         }
-        return poly;
     }
 }
@@ -0,0 +1,133 @@
+package org.example;
+
+import org.geotools.api.data.FeatureWriter;
+import org.geotools.api.data.Transaction;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.referencing.FactoryException;
+import org.geotools.api.referencing.operation.TransformException;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.geotools.data.shapefile.dbf.DbaseFileHeader;
+import org.geotools.data.shapefile.dbf.DbaseFileReader;
+import org.geotools.data.shapefile.files.ShpFiles;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Geometry-only fast path from one shapefile to another. Geometries are decoded by {@link ShapefileGeometryReader}
+ * and buffered in parallel batches; the .dbf row of a record is only read when its buffered feature is written,
+ * and rows are joined by record number, which is the order of both files. Records that fail to buffer are
+ * returned as failures and not written.
+ */
+public class ShapefileBufferJob {
+
+    public static class Failure {
+        // record number in the input shapefile
+        public final int record;
+        public final Exception exception;
+
+        Failure(int record, Exception exception) {
+            this.record = record;
+            this.exception = exception;
+        }
+    }
+
+    // Count of the written features, input vertices of the records that were not deleted, and the records that could not be buffered
+    public static class Result {
+        public final long written;
+        public final long vertices;
+        public final List<Failure> failures;
+
+        Result(long written, long vertices, List<Failure> failures) {
+            this.written = written;
+            this.vertices = vertices;
+            this.failures = failures;
+        }
+    }
+
+    public static Result run(File input, File output, double bufferDistance, int threads, int batchSize) throws IOException {
+        ShapefileDataStore source = new ShapefileDataStore(input.toURI().toURL());
+        ShapefileDataStore target = null;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            SimpleFeatureType bufferedSchema = BufferFactory.createBufferedSchema(source.getSchema());
+
+            Map<String, Serializable> params = new HashMap<>();
+            params.put("url", output.toURI().toURL());
+            params.put("create spatial index", Boolean.TRUE);
+            target = (ShapefileDataStore) new ShapefileDataStoreFactory().createNewDataStore(params);
+            target.setCharset(source.getCharset());
+            target.createSchema(bufferedSchema);
+
+            GeometryFactory factory = new GeometryFactory();
+            long written = 0;
+            long vertices = 0;
+            List<Failure> failures = new ArrayList<>();
+            try (ShapefileGeometryReader reader = new ShapefileGeometryReader(input);
+                 FeatureWriter<SimpleFeatureType, SimpleFeature> writer =
+                         target.getFeatureWriterAppend(target.getTypeNames()[0], Transaction.AUTO_COMMIT)) {
+                DbaseFileReader dbf = new DbaseFileReader(new ShpFiles(input), true, source.getCharset());
+                try {
+                    DbaseFileHeader header = dbf.getHeader();
+                    List<ShapefileGeometryReader.Record> batch = new ArrayList<>(batchSize);
+                    while (reader.hasNext()) {
+                        batch.clear();
+                        while (batch.size() < batchSize && reader.hasNext()) {
+                            batch.add(reader.next());
+                        }
+                        Geometry[] buffered = new Geometry[batch.size()];
+                        Exception[] errors = new Exception[batch.size()];
+                        pool.submit(() -> IntStream.range(0, batch.size()).parallel().forEach(i -> {
+                            try {
+                                buffered[i] = BufferFactory.bufferRecord(batch.get(i), bufferDistance, factory);
+                            } catch (FactoryException | TransformException | RuntimeException e) {
+                                errors[i] = e;
+                            }
+                        })).join();
+
+                        // every record consumes its .dbf row, failed or not, so the rows stay aligned
+                        for (int i = 0; i < batch.size(); i++) {
+                            DbaseFileReader.Row row = dbf.readRow();
+                            if (row.isDeleted()) continue;
+                            ShapefileGeometryReader.Record record = batch.get(i);
+                            for (double[] part : record.parts) {
+                                vertices += part.length / 2;
+                            }
+                            if (errors[i] != null) {
+                                failures.add(new Failure(record.number, errors[i]));
+                                continue;
+                            }
+                            SimpleFeature feature = writer.next();
+                            feature.setDefaultGeometry(buffered[i]);
+                            for (int field = 0; field < header.getNumFields(); field++) {
+                                feature.setAttribute(header.getFieldName(field), row.read(field));
+                            }
+                            writer.write();
+                            written++;
+                        }
+                    }
+                } finally {
+                    dbf.close();
+                }
+            }
+            return new Result(written, vertices, failures);
+        } finally {
+            pool.shutdown();
+            source.dispose();
+            if (target != null) {
+                target.dispose();
+            }
+        }
+    }
+}
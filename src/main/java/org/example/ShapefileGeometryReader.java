@@ -0,0 +1,191 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the geometries of a .shp file straight from a memory mapping into the packed vertex arrays the
+ * buffer engines work on, without building features, attributes or JTS geometries. The file is mapped in
+ * windows of at most {@link #WINDOW_SIZE} bytes, so inputs larger than 2 GB are read as well.
+ *
+ * Polygon records keep only their clockwise rings, which the shapefile format defines as the outer rings;
+ * the buffer keeps the outer shells of its union anyway. A polygon without any clockwise ring, written with
+ * the wrong orientation, keeps all of its rings.
+ */
+public class ShapefileGeometryReader implements AutoCloseable {
+    static final long WINDOW_SIZE = 1L << 30;
+    private static final int HEADER_SIZE = 100;
+    private static final int FILE_CODE = 9994;
+
+    public static class Record {
+        // 1-based record number, the same as the row number in the .dbf file
+        public final int number;
+        // null for null shapes and shape types the buffer does not support
+        final ProjectedGeometry.Type type;
+        final List<double[]> parts;
+        // centre of the record bounding box
+        final double centerX;
+        final double centerY;
+
+        Record(int number, ProjectedGeometry.Type type, List<double[]> parts, double centerX, double centerY) {
+            this.number = number;
+            this.type = type;
+            this.parts = parts;
+            this.centerX = centerX;
+            this.centerY = centerY;
+        }
+
+        public boolean isNull() {
+            return type == null;
+        }
+    }
+
+    private final FileChannel channel;
+    private final long windowSize;
+    private final long length;
+    private final int shapeType;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position = HEADER_SIZE;
+
+    public ShapefileGeometryReader(File shp) throws IOException {
+        this(shp, WINDOW_SIZE);
+    }
+
+    // a small window lets tests cross window boundaries with small files
+    ShapefileGeometryReader(File shp, long windowSize) throws IOException {
+        this.windowSize = windowSize;
+        channel = FileChannel.open(shp.toPath(), StandardOpenOption.READ);
+        try {
+            length = channel.size();
+            if (length < HEADER_SIZE) throw new IOException(shp + " is not a shapefile, the header is truncated");
+            map(0, HEADER_SIZE);
+            if (bigEndianInt(0) != FILE_CODE) throw new IOException(shp + " is not a shapefile, wrong file code");
+            shapeType = window.getInt(32);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getShapeType() {
+        return shapeType;
+    }
+
+    public boolean hasNext() {
+        return position + 8 <= length;
+    }
+
+    public Record next() throws IOException {
+        map(position, 8);
+        int base = (int) (position - windowStart);
+        int number = bigEndianInt(base);
+        long contentLength = 2L * bigEndianInt(base + 4);
+        if (position + 8 + contentLength > length) throw new IOException("record " + number + " is truncated");
+
+        map(position + 8, contentLength);
+        Record record = decode(number, (int) (position + 8 - windowStart), contentLength);
+        position += 8 + contentLength;
+        return record;
+    }
+
+    // remaps the window when the requested range is not inside the current one
+    private void map(long start, long size) throws IOException {
+        if (window != null && start >= windowStart && start + size <= windowStart + window.capacity()) return;
+        long mapped = Math.min(Math.max(windowSize, size), length - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, mapped);
+        window.order(ByteOrder.LITTLE_ENDIAN);
+        windowStart = start;
+    }
+
+    private int bigEndianInt(int index) {
+        return Integer.reverseBytes(window.getInt(index));
+    }
+
+    private Record decode(int number, int offset, long contentLength) {
+        int type = contentLength < 4 ? 0 : window.getInt(offset);
+        switch (type) {
+            case 1: case 11: case 21:
+                double x = window.getDouble(offset + 4);
+                double y = window.getDouble(offset + 12);
+                return new Record(number, ProjectedGeometry.Type.POINT, Collections.singletonList(new double[]{x, y}), x, y);
+            case 3: case 13: case 23:
+                return decodeParts(number, offset, false);
+            case 5: case 15: case 25:
+                return decodeParts(number, offset, true);
+            default:
+                // null shapes, multipoints and multipatches
+                return new Record(number, null, Collections.<double[]>emptyList(), Double.NaN, Double.NaN);
+        }
+    }
+
+    // Poly records: type, box (4 doubles), numParts, numPoints, part starts, then the x,y points
+    private Record decodeParts(int number, int offset, boolean polygon) {
+        double centerX = (window.getDouble(offset + 4) + window.getDouble(offset + 20)) / 2;
+        double centerY = (window.getDouble(offset + 12) + window.getDouble(offset + 28)) / 2;
+        int numParts = window.getInt(offset + 36);
+        int numPoints = window.getInt(offset + 40);
+        int points = offset + 44 + 4 * numParts;
+
+        List<double[]> parts = new ArrayList<>(numParts);
+        List<double[]> holes = polygon ? new ArrayList<>() : null;
+        for (int p = 0; p < numParts; p++) {
+            int from = window.getInt(offset + 44 + 4 * p);
+            int to = p + 1 < numParts ? window.getInt(offset + 48 + 4 * p) : numPoints;
+            double[] vertices = pack(points, from, to, polygon);
+            if (vertices.length == 0) continue;
+            if (!polygon || signedArea(vertices) <= 0) {
+                parts.add(vertices);
+            } else {
+                holes.add(vertices);
+            }
+        }
+        if (polygon && parts.isEmpty()) {
+            parts = holes;
+        }
+        ProjectedGeometry.Type type = polygon ? ProjectedGeometry.Type.SHELLS : ProjectedGeometry.Type.LINES;
+        return new Record(number, parts.isEmpty() ? null : type, parts, centerX, centerY);
+    }
+
+    // Packs points [from, to) into x,y pairs, dropping consecutive duplicates and, for rings, the closing vertex
+    private double[] pack(int points, int from, int to, boolean closed) {
+        double[] packed = new double[2 * Math.max(0, to - from)];
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            double x = window.getDouble(points + 16 * i);
+            double y = window.getDouble(points + 16 * i + 8);
+            if (n > 0 && packed[2 * n - 2] == x && packed[2 * n - 1] == y) continue;
+            packed[2 * n] = x;
+            packed[2 * n + 1] = y;
+            n++;
+        }
+        if (closed && n > 1 && packed[0] == packed[2 * n - 2] && packed[1] == packed[2 * n - 1]) {
+            n--;
+        }
+        return 2 * n == packed.length ? packed : Arrays.copyOf(packed, 2 * n);
+    }
+
+    // shoelace formula, negative for clockwise rings
+    private static double signedArea(double[] ring) {
+        int n = ring.length / 2;
+        double sum = 0;
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            sum += (ring[2 * j] - ring[2 * i]) * (ring[2 * j + 1] + ring[2 * i + 1]);
+        }
+        return sum / 2;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
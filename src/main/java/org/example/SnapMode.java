@@ -0,0 +1,10 @@
+package org.example;
+
+public enum SnapMode {
+    // floating precision overlay only
+    OFF,
+    // floating precision first, pieces are snapped to the fixed precision grid when the overlay fails
+    FALLBACK,
+    // pieces are always snapped to the fixed precision grid and unioned with snap-rounding
+    ALWAYS
+}
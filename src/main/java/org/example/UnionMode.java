@@ -0,0 +1,8 @@
+package org.example;
+
+public enum UnionMode {
+    // one GeometryCollection.union() call over every segment and joint polygon
+    GLOBAL,
+    // consecutive pieces are unioned in small blocks, then the partial results are merged pairwise in a tree
+    SEQUENTIAL_TREE
+}
@@ -0,0 +1,89 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Douglas-Peucker simplification of packed vertex parts. Every dropped vertex lies within the tolerance of
+ * the simplified part and the simplified part stays within the tolerance of the original, so their Hausdorff
+ * distance, and with it the Hausdorff distance between their buffers at any distance, is at most the tolerance.
+ */
+class VertexSimplifier {
+
+    static ProjectedGeometry simplify(ProjectedGeometry geometry, double tolerance) {
+        if (geometry.type == ProjectedGeometry.Type.POINT || !(tolerance > 0)) return geometry;
+        boolean closed = geometry.type == ProjectedGeometry.Type.SHELLS;
+        List<double[]> parts = new ArrayList<>(geometry.parts.size());
+        for (double[] part : geometry.parts) {
+            parts.add(simplify(part, tolerance, closed));
+        }
+        return new ProjectedGeometry(geometry.type, parts, geometry.factory);
+    }
+
+    // Lines keep both end vertices. Rings are walked from vertex 0 back to vertex 0, which is always kept.
+    // A span whose ends coincide, a ring or a closed line, always keeps its farthest vertex, so a small ring
+    // collapses to a back-and-forth segment rather than to [A, A]. Repeated consecutive vertices are dropped.
+    static double[] simplify(double[] vertices, double tolerance, boolean closed) {
+        int n = vertices.length / 2;
+        if (n < 3) return vertices;
+        int last = closed ? n : n - 1;
+        double toleranceSq = tolerance * tolerance;
+
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[last % n] = true;
+        int[] stack = new int[2 * n + 2];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = last;
+        while (top > 0) {
+            int to = stack[--top];
+            int from = stack[--top];
+            double maxSq = -1;
+            int farthest = -1;
+            for (int k = from + 1; k < to; k++) {
+                double dSq = segmentDistanceSq(vertices, k, from, to % n);
+                if (dSq > maxSq) {
+                    maxSq = dSq;
+                    farthest = k;
+                }
+            }
+            boolean degenerate = vertices[2 * from] == vertices[2 * (to % n)]
+                    && vertices[2 * from + 1] == vertices[2 * (to % n) + 1];
+            if (farthest >= 0 && (maxSq > toleranceSq || degenerate && maxSq > 0)) {
+                keep[farthest] = true;
+                stack[top++] = from;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = to;
+            }
+        }
+
+        double[] simplified = new double[2 * n];
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            if (!keep[i]) continue;
+            double x = vertices[2 * i], y = vertices[2 * i + 1];
+            if (j > 0 && simplified[2 * j - 2] == x && simplified[2 * j - 1] == y) continue;
+            simplified[2 * j] = x;
+            simplified[2 * j + 1] = y;
+            j++;
+        }
+        if (closed && j > 1 && simplified[0] == simplified[2 * j - 2] && simplified[1] == simplified[2 * j - 1]) {
+            j--;
+        }
+        return j == n ? vertices : Arrays.copyOf(simplified, 2 * j);
+    }
+
+    // squared distance from vertex p to the segment between vertices a and b
+    private static double segmentDistanceSq(double[] v, int p, int a, int b) {
+        double px = v[2 * p], py = v[2 * p + 1];
+        double ax = v[2 * a], ay = v[2 * a + 1];
+        double dx = v[2 * b] - ax, dy = v[2 * b + 1] - ay;
+        double lengthSq = dx * dx + dy * dy;
+        double t = lengthSq == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSq));
+        double ex = ax + t * dx - px, ey = ay + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+}
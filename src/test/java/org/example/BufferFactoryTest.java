@@ -0,0 +1,62 @@
+package org.example;
+
+import org.junit.Test;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BufferFactoryTest {
+    private final WKTReader reader = new WKTReader();
+
+    private ProjectedGeometry prepare(String wkt) throws ParseException {
+        return BufferFactory.prepare(reader.read(wkt));
+    }
+
+    @Test
+    public void lineStringPartsStaySeparate() throws ParseException {
+        ProjectedGeometry prepared = prepare("MULTILINESTRING ((0 0, 1 0, 2 0), (2 0, 3 1), (5 5, 6 6, 7 5))");
+        assertEquals(ProjectedGeometry.Type.LINES, prepared.type);
+        assertEquals(3, prepared.parts.size());
+        assertArrayEquals(new double[]{0, 0, 1, 0, 2, 0}, prepared.parts.get(0), 0);
+        assertArrayEquals(new double[]{2, 0, 3, 1}, prepared.parts.get(1), 0);
+        assertArrayEquals(new double[]{5, 5, 6, 6, 7, 5}, prepared.parts.get(2), 0);
+    }
+
+    @Test
+    public void onlyConsecutiveDuplicatesAreDropped() throws ParseException {
+        ProjectedGeometry prepared = prepare("LINESTRING (0 0, 0 0, 1 0, 1 0, 1 0, 1 1, 0 0, 1 0)");
+        assertEquals(1, prepared.parts.size());
+        assertArrayEquals(new double[]{0, 0, 1, 0, 1, 1, 0, 0, 1, 0}, prepared.parts.get(0), 0);
+    }
+
+    @Test
+    public void closedLineStringKeepsItsLastVertex() throws ParseException {
+        ProjectedGeometry prepared = prepare("LINESTRING (0 0, 1 0, 1 1, 0 0)");
+        assertArrayEquals(new double[]{0, 0, 1, 0, 1, 1, 0, 0}, prepared.parts.get(0), 0);
+    }
+
+    @Test
+    public void ringClosingVertexIsDroppedAndHolesIgnored() throws ParseException {
+        ProjectedGeometry prepared = prepare("MULTIPOLYGON (((0 0, 4 0, 4 4, 4 4, 0 4, 0 0), (1 1, 2 1, 2 2, 1 1)),"
+                + " ((10 10, 11 10, 10 11, 10 10)))");
+        assertEquals(ProjectedGeometry.Type.SHELLS, prepared.type);
+        assertEquals(2, prepared.parts.size());
+        assertArrayEquals(new double[]{0, 0, 4, 0, 4, 4, 0, 4}, prepared.parts.get(0), 0);
+        assertArrayEquals(new double[]{10, 10, 11, 10, 10, 11}, prepared.parts.get(1), 0);
+    }
+
+    @Test
+    public void pointIsOnePart() throws ParseException {
+        ProjectedGeometry prepared = prepare("POINT (3 4)");
+        assertEquals(ProjectedGeometry.Type.POINT, prepared.type);
+        assertArrayEquals(new double[]{3, 4}, prepared.parts.get(0), 0);
+    }
+
+    @Test
+    public void unsupportedTypesAreNotExtracted() throws ParseException {
+        assertNull(prepare("GEOMETRYCOLLECTION (POINT (1 1))"));
+    }
+}
@@ -0,0 +1,104 @@
+package org.example;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BufferMetricsRecorderTest {
+
+    private static BufferMetricsRecorder.Histogram histogram(long... values) {
+        BufferMetricsRecorder.Histogram h = new BufferMetricsRecorder.Histogram();
+        for (long value : values) {
+            h.record(value);
+        }
+        return h;
+    }
+
+    @Test
+    public void zeroAndOneShareTheFirstBucket() {
+        assertEquals(0, histogram(0).getPercentile(0.5));
+        assertEquals(1, histogram(0, 1).getPercentile(0.5));
+        assertEquals(1, histogram(1, 1, 1).getPercentile(0.99));
+        assertEquals(0, histogram().getPercentile(0.5));
+    }
+
+    @Test
+    public void powersOfTwoStartTheirBucket() {
+        // 2^k falls into the bucket [2^k, 2^(k+1) - 1]
+        assertEquals(3, histogram(2, 2, 100).getPercentile(0.5));
+        assertEquals(7, histogram(4, 5, 7, 100).getPercentile(0.5));
+        assertEquals(63, histogram(1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024).getPercentile(0.5));
+        // the last bucket is capped by the largest recorded value
+        assertEquals(1024, histogram(1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024).getPercentile(0.99));
+    }
+
+    @Test
+    public void percentilesCountSumAndMax() {
+        long[] values = new long[100];
+        for (int i = 0; i < 99; i++) {
+            values[i] = 10;
+        }
+        values[99] = 1000;
+        BufferMetricsRecorder.Histogram h = histogram(values);
+        assertEquals(100, h.getCount());
+        assertEquals(1990, h.getSum());
+        assertEquals(19.9, h.getMean(), 1e-12);
+        assertEquals(15, h.getPercentile(0.5));
+        assertEquals(15, h.getPercentile(0.99));
+        assertEquals(1000, h.getPercentile(1.0));
+        assertEquals(1000, h.getMax());
+    }
+
+    @Test
+    public void negativeValuesAreIgnored() {
+        BufferMetricsRecorder recorder = new BufferMetricsRecorder();
+        recorder.recordFeature(5, 7, 3, -1);
+        assertEquals(1, recorder.getVerticesIn().getCount());
+        assertEquals(0, recorder.getAllocatedBytes().getCount());
+    }
+
+    @Test
+    public void resetClearsEveryHistogram() {
+        BufferMetricsRecorder recorder = new BufferMetricsRecorder();
+        recorder.recordStage(BufferMetrics.Stage.UNION, 2000);
+        recorder.recordFeature(5, 7, 3, 100);
+        recorder.reset();
+        assertEquals(0, recorder.getStage(BufferMetrics.Stage.UNION).getCount());
+        assertEquals(0, recorder.getVerticesIn().getMax());
+        assertEquals(0, recorder.getAllocatedBytes().getSum());
+    }
+
+    @Test
+    public void jsonHasStagesAndFeatureHistograms() {
+        BufferMetricsRecorder recorder = new BufferMetricsRecorder();
+        recorder.recordStage(BufferMetrics.Stage.UNION, 2000);
+        recorder.recordFeature(5, 7, 3, -1);
+
+        String empty = "{\"count\":0,\"sum\":0,\"mean\":0.0,\"p50\":0,\"p90\":0,\"p99\":0,\"max\":0}";
+        String expected = "{\"stages\":{"
+                + "\"decode\":" + empty + ","
+                + "\"transform\":" + empty + ","
+                + "\"extract\":" + empty + ","
+                + "\"pieces\":" + empty + ","
+                + "\"union\":{\"count\":1,\"sum\":2000,\"mean\":2000.0,\"p50\":2000,\"p90\":2000,\"p99\":2000,\"max\":2000}"
+                + "},\"features\":{"
+                + "\"verticesIn\":{\"count\":1,\"sum\":5,\"mean\":5.0,\"p50\":5,\"p90\":5,\"p99\":5,\"max\":5},"
+                + "\"verticesOut\":{\"count\":1,\"sum\":7,\"mean\":7.0,\"p50\":7,\"p90\":7,\"p99\":7,\"max\":7},"
+                + "\"overlays\":{\"count\":1,\"sum\":3,\"mean\":3.0,\"p50\":3,\"p90\":3,\"p99\":3,\"max\":3},"
+                + "\"allocatedBytes\":" + empty
+                + "}}";
+        assertEquals(expected, recorder.toJson());
+    }
+
+    @Test
+    public void textHasOneLinePerStageAndFeatureHistogram() {
+        BufferMetricsRecorder recorder = new BufferMetricsRecorder();
+        recorder.recordStage(BufferMetrics.Stage.DECODE, 1_500_000);
+        String[] lines = recorder.toText().split("\n");
+        assertEquals(1 + BufferMetrics.Stage.values().length + 1 + 4, lines.length);
+        assertTrue(lines[0].startsWith("stage"));
+        assertTrue(lines[1].matches("decode\\s+1\\s+1\\.5\\s+1500\\.0\\s+1500\\.0\\s+1500\\.0\\s+1500\\.0\\s*"));
+        assertTrue(lines[lines.length - 1].startsWith("alloc bytes"));
+    }
+}
@@ -0,0 +1,147 @@
+package org.example;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BufferResultCacheTest {
+    private final GeometryFactory factory = new GeometryFactory();
+
+    private LineString line(double x, int vertices) {
+        Coordinate[] coords = new Coordinate[vertices];
+        for (int i = 0; i < vertices; i++) {
+            coords[i] = new Coordinate(x + i, i % 2);
+        }
+        return factory.createLineString(coords);
+    }
+
+    private static BufferResultCache.Key key(Geometry geometry, double distance) {
+        return key(geometry, distance, SnapMode.OFF, 0);
+    }
+
+    private static BufferResultCache.Key key(Geometry geometry, double distance, SnapMode snapMode, double snapScale) {
+        return new BufferResultCache.Key(geometry, distance, null, BufferEngine.SEGMENT_UNION, 16, 0, 0, snapMode, snapScale);
+    }
+
+    // estimated size of an entry whose input and result both have the given number of vertices
+    private static long entryBytes(int vertices) {
+        return 256 + BufferResultCache.BYTES_PER_VERTEX * 2 * vertices;
+    }
+
+    @Test
+    public void equalInputsAndSettingsHit() {
+        BufferResultCache cache = new BufferResultCache(4, Long.MAX_VALUE);
+        cache.put(key(line(0, 3), 10), line(100, 3));
+        assertNotNull(cache.get(key(line(0, 3), 10)));
+        assertNull(cache.get(key(line(0, 3), 11)));
+        assertNull(cache.get(key(line(0.5, 3), 10)));
+        assertNull(cache.get(key(line(0, 3), 10, SnapMode.FALLBACK, 1000)));
+        assertNull(cache.get(key(line(0, 3), 10, SnapMode.ALWAYS, 1000)));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+        assertEquals(0.2, cache.getHitRatio(), 1e-12);
+    }
+
+    @Test
+    public void snapModeAndScaleAreSeparateEntries() {
+        BufferResultCache cache = new BufferResultCache(4, Long.MAX_VALUE);
+        cache.put(key(line(0, 3), 10, SnapMode.FALLBACK, 1000), line(100, 3));
+        assertNull(cache.get(key(line(0, 3), 10, SnapMode.OFF, 0)));
+        assertNull(cache.get(key(line(0, 3), 10, SnapMode.FALLBACK, 100)));
+        assertNotNull(cache.get(key(line(0, 3), 10, SnapMode.FALLBACK, 1000)));
+    }
+
+    @Test
+    public void entryCountEvictsLeastRecentlyUsed() {
+        BufferResultCache cache = new BufferResultCache(2, Long.MAX_VALUE);
+        cache.put(key(line(0, 3), 10), line(100, 3));
+        cache.put(key(line(1, 3), 10), line(101, 3));
+        // touching the first entry makes the second one the eldest
+        assertNotNull(cache.get(key(line(0, 3), 10)));
+        cache.put(key(line(2, 3), 10), line(102, 3));
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(key(line(0, 3), 10)));
+        assertNull(cache.get(key(line(1, 3), 10)));
+        assertNotNull(cache.get(key(line(2, 3), 10)));
+        assertEquals(2 * entryBytes(3), cache.getEstimatedBytes());
+    }
+
+    @Test
+    public void estimatedBytesEvictLeastRecentlyUsed() {
+        BufferResultCache cache = new BufferResultCache(100, 2 * entryBytes(10));
+        cache.put(key(line(0, 10), 10), line(100, 10));
+        cache.put(key(line(1, 10), 10), line(101, 10));
+        assertEquals(2 * entryBytes(10), cache.getEstimatedBytes());
+        cache.put(key(line(2, 5), 10), line(102, 5));
+        assertEquals(2, cache.size());
+        assertEquals(entryBytes(10) + entryBytes(5), cache.getEstimatedBytes());
+        assertNull(cache.get(key(line(0, 10), 10)));
+        assertNotNull(cache.get(key(line(1, 10), 10)));
+    }
+
+    @Test
+    public void entryLargerThanTheCacheIsNotStored() {
+        BufferResultCache cache = new BufferResultCache(100, entryBytes(10));
+        cache.put(key(line(0, 10), 10), line(100, 10));
+        cache.put(key(line(1, 11), 10), line(101, 11));
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get(key(line(0, 10), 10)));
+    }
+
+    @Test
+    public void replacingAnEntryKeepsTheByteCount() {
+        BufferResultCache cache = new BufferResultCache(4, Long.MAX_VALUE);
+        cache.put(key(line(0, 3), 10), line(100, 3));
+        cache.put(key(line(0, 3), 10), line(100, 3));
+        assertEquals(1, cache.size());
+        assertEquals(entryBytes(3), cache.getEstimatedBytes());
+    }
+
+    @Test
+    public void returnedGeometriesAreCopies() {
+        BufferResultCache cache = new BufferResultCache(4, Long.MAX_VALUE);
+        LineString input = line(0, 3);
+        LineString result = line(100, 3);
+        cache.put(key(input, 10), result);
+
+        // modifying the stored input and result afterwards does not change the entry
+        input.getCoordinateN(0).x = 50;
+        input.geometryChanged();
+        result.getCoordinateN(0).x = 50;
+        result.geometryChanged();
+
+        Geometry first = cache.get(key(line(0, 3), 10));
+        assertTrue(first.equalsExact(line(100, 3)));
+        first.getCoordinates()[0].x = 60;
+        first.geometryChanged();
+
+        Geometry second = cache.get(key(line(0, 3), 10));
+        assertNotSame(first, second);
+        assertTrue(second.equalsExact(line(100, 3)));
+    }
+
+    @Test
+    public void clearResetsEntriesAndCounters() {
+        BufferResultCache cache = new BufferResultCache(4, Long.MAX_VALUE);
+        cache.put(key(line(0, 3), 10), line(100, 3));
+        cache.get(key(line(0, 3), 10));
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getEstimatedBytes());
+        assertEquals(0, cache.getHitRatio(), 0);
+        assertNull(cache.get(key(line(0, 3), 10)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxBytesMustBePositive() {
+        new BufferResultCache(4, 0);
+    }
+}
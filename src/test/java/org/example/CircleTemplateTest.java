@@ -0,0 +1,47 @@
+package org.example;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CircleTemplateTest {
+
+    @Test
+    public void nonPositiveToleranceKeepsDefault() {
+        assertEquals(16, CircleTemplate.segmentsFor(100, 0, 16));
+        assertEquals(16, CircleTemplate.segmentsFor(100, -1, 16));
+        assertEquals(16, CircleTemplate.segmentsFor(0, 1, 16));
+    }
+
+    @Test
+    public void segmentCountBoundsChordError() {
+        for (double radius : new double[]{1, 10, 100, 1000, 10000}) {
+            for (double error : new double[]{0.01, 0.1, 1}) {
+                int segments = CircleTemplate.segmentsFor(radius, error, 16);
+                assertEquals(0, segments % 4);
+                assertTrue(segments >= CircleTemplate.MIN_SEGMENTS && segments <= CircleTemplate.MAX_SEGMENTS);
+                double sagitta = radius * (1 - Math.cos(Math.PI / segments));
+                if (segments < CircleTemplate.MAX_SEGMENTS) {
+                    assertTrue(sagitta <= error * (1 + 1e-9));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void toleranceAboveRadiusGivesMinimum() {
+        assertEquals(CircleTemplate.MIN_SEGMENTS, CircleTemplate.segmentsFor(1, 5, 16));
+    }
+
+    @Test
+    public void circleIsClosedAndOnRadius() {
+        Coordinate[] circle = CircleTemplate.of(32).circle(10, -5, 3);
+        assertEquals(33, circle.length);
+        assertTrue(circle[0].equals2D(circle[32]));
+        for (Coordinate c : circle) {
+            assertEquals(3, c.distance(new Coordinate(10, -5)), 1e-12);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.example;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class LocalPlanarTest {
+    private final GeometryFactory factory = new GeometryFactory();
+
+    private ProjectedGeometry point(double x, double y) {
+        return new ProjectedGeometry(ProjectedGeometry.Type.POINT, Collections.singletonList(new double[]{x, y}), factory);
+    }
+
+    // metres between the projections of two geographic points in the frame around the first one
+    private static double projectedDistance(double x1, double y1, double x2, double y2) {
+        LocalPlanar frame = LocalPlanar.frameFor(new Envelope(x1, x1, y1, y1), 0, 1e6);
+        ProjectedGeometry projected = frame.project(new ProjectedGeometry(ProjectedGeometry.Type.LINES,
+                Collections.singletonList(new double[]{x1, y1, x2, y2}), new GeometryFactory()));
+        double[] part = projected.parts.get(0);
+        return Math.hypot(part[2] - part[0], part[3] - part[1]);
+    }
+
+    @Test
+    public void noFrameWhenDisabledEmptyOrNearPole() {
+        Envelope small = new Envelope(10, 10.001, 50, 50.001);
+        assertNull(LocalPlanar.frameFor(small, 100, 0));
+        assertNull(LocalPlanar.frameFor(new Envelope(), 100, 1000));
+        assertNull(LocalPlanar.frameFor(new Envelope(10, 10.001, 80.5, 80.501), 100, 1000));
+        assertNull(LocalPlanar.frameFor(new Envelope(10, 10.001, -80.5, -80.501), 100, 1000));
+        assertNotNull(LocalPlanar.frameFor(small, 100, 1000));
+    }
+
+    @Test
+    public void noFrameWhenExtentPlusDistanceExceedsLimit() {
+        // about 111 m by 72 m at 50 degrees north, a half diagonal of about 66 m
+        Envelope envelope = new Envelope(10, 10.001, 50, 50.001);
+        assertNotNull(LocalPlanar.frameFor(envelope, 900, 1000));
+        assertNull(LocalPlanar.frameFor(envelope, 950, 1000));
+        assertNull(LocalPlanar.frameFor(envelope, -950, 1000));
+    }
+
+    @Test
+    public void scaleMatchesEllipsoidDegreeLengths() {
+        // WGS84 lengths of one degree at the equator and at 45 degrees
+        assertEquals(111319.491, projectedDistance(0, 0, 1, 0), 0.01);
+        assertEquals(110574.276, projectedDistance(0, 0, 0, 1e-3) * 1e3, 0.01);
+        assertEquals(78846.835, projectedDistance(0, 45, 1e-3, 45) * 1e3, 0.01);
+        assertEquals(111131.777, projectedDistance(0, 45, 0, 45 + 1e-3) * 1e3, 0.01);
+    }
+
+    @Test
+    public void unprojectInvertsProject() throws ParseException {
+        Geometry geographic = new WKTReader(factory).read("LINESTRING (13.40 52.51, 13.41 52.52, 13.405 52.515)");
+        LocalPlanar frame = LocalPlanar.frameFor(geographic.getEnvelopeInternal(), 500, 5000);
+        double[] vertices = new double[2 * geographic.getNumPoints()];
+        Coordinate[] coords = geographic.getCoordinates();
+        for (int i = 0; i < coords.length; i++) {
+            vertices[2 * i] = coords[i].x;
+            vertices[2 * i + 1] = coords[i].y;
+        }
+        ProjectedGeometry projected = frame.project(new ProjectedGeometry(ProjectedGeometry.Type.LINES,
+                Collections.singletonList(vertices), factory));
+        double[] part = projected.parts.get(0);
+        Coordinate[] planar = new Coordinate[coords.length];
+        for (int i = 0; i < coords.length; i++) {
+            planar[i] = new Coordinate(part[2 * i], part[2 * i + 1]);
+        }
+        Coordinate[] back = frame.unproject(factory.createLineString(planar)).getCoordinates();
+        for (int i = 0; i < coords.length; i++) {
+            assertEquals(coords[i].x, back[i].x, 1e-12);
+            assertEquals(coords[i].y, back[i].y, 1e-12);
+        }
+    }
+
+    @Test
+    public void frameIsCentredOnEnvelope() {
+        LocalPlanar frame = LocalPlanar.frameFor(new Envelope(10, 10.002, 50, 50.002), 0, 1000);
+        double[] centre = frame.project(point(10.001, 50.001)).parts.get(0);
+        assertEquals(0, centre[0], 1e-9);
+        assertEquals(0, centre[1], 1e-9);
+    }
+}
@@ -0,0 +1,48 @@
+package org.example;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OffsetCurveBufferTest {
+    private final GeometryFactory factory = new GeometryFactory();
+
+    private void assertSameArea(Geometry geometry, double distance) {
+        Geometry segments = BufferFactory.buffer(geometry, distance, BufferEngine.SEGMENT_UNION);
+        Geometry offset = BufferFactory.buffer(geometry, distance, BufferEngine.OFFSET_CURVE);
+        assertTrue(offset.isValid());
+        assertEquals(segments.getArea(), offset.getArea(), segments.getArea() * 0.005);
+    }
+
+    @Test
+    public void smoothLineMatchesSegmentUnion() {
+        assertSameArea(TestGeometries.walk(2000, 10, true, 1), 100);
+    }
+
+    @Test
+    public void polygonMatchesSegmentUnion() {
+        Geometry polygon = TestGeometries.walk(200, 10, true, 2).buffer(15);
+        assertSameArea(polygon, 5);
+        assertSameArea(polygon, 50);
+    }
+
+    @Test
+    public void shortConcaveTurnsMatchSegmentUnion() {
+        Coordinate[] zigzag = new Coordinate[200];
+        for (int i = 0; i < zigzag.length; i++) {
+            zigzag[i] = new Coordinate(i, i % 2 == 0 ? 0 : 3);
+        }
+        assertSameArea(factory.createLineString(zigzag), 10);
+    }
+
+    // the raw offset curve of a dense walk at a large distance crosses itself O(n^2) times
+    @Test(timeout = 30000)
+    public void denseRandomWalkAtLargeDistance() {
+        assertSameArea(TestGeometries.walk(1000, 10, false, 3), 500);
+        assertSameArea(TestGeometries.walk(2000, 10, false, 4), 500);
+    }
+}
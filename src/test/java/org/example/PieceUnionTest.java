@@ -0,0 +1,105 @@
+package org.example;
+
+import org.junit.After;
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PieceUnionTest {
+    private final GeometryFactory factory = new GeometryFactory();
+
+    @After
+    public void reset() {
+        BufferFactory.setUnionMode(UnionMode.SEQUENTIAL_TREE);
+        BufferFactory.setParallelThreshold(10_000);
+        BufferFactory.setMetrics(null);
+    }
+
+    // overlapping circles along a random walk, in walk order like the pieces of a line buffer
+    private List<Polygon> pieces(int n, long seed) {
+        Random random = new Random(seed);
+        CircleTemplate circle = CircleTemplate.of(16);
+        List<Polygon> pieces = new ArrayList<>(n);
+        double x = 0, y = 0;
+        for (int i = 0; i < n; i++) {
+            pieces.add(factory.createPolygon(circle.circle(x, y, 5)));
+            double heading = random.nextDouble() * 2 * Math.PI;
+            x += 3 * Math.cos(heading);
+            y += 3 * Math.sin(heading);
+        }
+        return pieces;
+    }
+
+    // overlays recorded for one buffer computed on a pool with two workers
+    private int overlaysOnPool(Geometry geometry) throws Exception {
+        int[] overlays = new int[1];
+        BufferFactory.setMetrics(new BufferMetrics() {
+            @Override
+            public void recordStage(Stage stage, long nanos) {
+            }
+
+            @Override
+            public void recordFeature(long verticesIn, long verticesOut, int count, long allocatedBytes) {
+                overlays[0] = count;
+            }
+        });
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            pool.submit(() -> {
+                long feature = Instrumentation.startFeature();
+                Geometry buffer = BufferFactory.buffer(geometry, 20, BufferEngine.SEGMENT_UNION);
+                Instrumentation.endFeature(feature, geometry.getNumPoints(), buffer.getNumPoints());
+            }).get();
+        } finally {
+            pool.shutdown();
+        }
+        return overlays[0];
+    }
+
+    @Test
+    public void overlayCountFollowsTheTree() {
+        assertEquals(1, PieceUnion.overlayCount(1000, UnionMode.GLOBAL));
+        assertEquals(1, PieceUnion.overlayCount(PieceUnion.BLOCK_SIZE, UnionMode.SEQUENTIAL_TREE));
+        assertEquals(3, PieceUnion.overlayCount(PieceUnion.BLOCK_SIZE + 1, UnionMode.SEQUENTIAL_TREE));
+        assertEquals(7, PieceUnion.overlayCount(4 * PieceUnion.BLOCK_SIZE, UnionMode.SEQUENTIAL_TREE));
+    }
+
+    @Test
+    public void parallelUnionMatchesSequentialTree() {
+        List<Polygon> pieces = pieces(2000, 7);
+        Geometry sequential = PieceUnion.union(pieces, factory, UnionMode.SEQUENTIAL_TREE);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int leafSize : new int[]{PieceUnion.BLOCK_SIZE, 100, 5000}) {
+                Geometry parallel = PieceUnion.parallelUnion(pieces, factory, pool, leafSize);
+                assertTrue(parallel.isValid());
+                assertEquals(sequential.getArea(), parallel.getArea(), sequential.getArea() * 1e-9);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void parallelThresholdOnlyAppliesToTreeMode() throws Exception {
+        LineString line = TestGeometries.walk(200, 5);
+        int pieces = 2 * line.getNumPoints() - 1;
+        BufferFactory.setParallelThreshold(1);
+
+        BufferFactory.setUnionMode(UnionMode.GLOBAL);
+        assertEquals(1, overlaysOnPool(line));
+
+        BufferFactory.setUnionMode(UnionMode.SEQUENTIAL_TREE);
+        assertEquals(PieceUnion.overlayCount(pieces, UnionMode.SEQUENTIAL_TREE), overlaysOnPool(line));
+    }
+}
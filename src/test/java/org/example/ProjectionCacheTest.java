@@ -0,0 +1,66 @@
+package org.example;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ProjectionCacheTest {
+
+    @Test
+    public void keyIsZoneAndHemisphere() {
+        assertEquals("AUTO:42001,9.0,0.0", ProjectionCache.snap(6.1, 0));
+        assertEquals("AUTO:42001,9.0,0.0", ProjectionCache.snap(11.9, 79));
+        assertEquals("AUTO:42001,9.0,-1.0", ProjectionCache.snap(11.9, -0.1));
+        assertNotEquals(ProjectionCache.snap(11.9, 45), ProjectionCache.snap(12.1, 45));
+        // the antimeridian belongs to zone 60
+        assertEquals("AUTO:42001,177.0,0.0", ProjectionCache.snap(180, 10));
+        assertEquals("AUTO:42001,-177.0,-1.0", ProjectionCache.snap(-180, -10));
+    }
+
+    @Test
+    public void pointsInOneZoneShareAProjection() throws Exception {
+        ProjectionCache cache = new ProjectionCache(4);
+        ProjectionCache.Projection first = cache.get(13.4, 52.5);
+        assertSame(first, cache.get(17.9, 48.1));
+        assertNotSame(first, cache.get(13.4, -52.5));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1.0 / 3, cache.getHitRatio(), 1e-12);
+    }
+
+    @Test
+    public void leastRecentlyUsedZoneIsEvicted() throws Exception {
+        ProjectionCache cache = new ProjectionCache(2);
+        ProjectionCache.Projection zone33 = cache.get(15, 50);
+        cache.get(21, 50);
+        // touching zone 33 makes zone 34 the eldest entry
+        assertSame(zone33, cache.get(16, 51));
+        cache.get(27, 50);
+        assertEquals(2, cache.size());
+        assertSame(zone33, cache.get(14, 49));
+        assertEquals(3, cache.getMissCount());
+        cache.get(22, 50);
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void clearResetsCounters() throws Exception {
+        ProjectionCache cache = new ProjectionCache(2);
+        cache.get(15, 50);
+        cache.get(15, 50);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        assertEquals(0, cache.getHitRatio(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxEntriesMustBePositive() {
+        new ProjectionCache(0);
+    }
+}
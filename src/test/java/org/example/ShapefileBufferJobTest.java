@@ -0,0 +1,105 @@
+package org.example;
+
+import org.geotools.api.data.FeatureWriter;
+import org.geotools.api.data.Transaction;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShapefileBufferJobTest {
+    private File directory;
+
+    @Before
+    public void createDirectory() throws Exception {
+        directory = Files.createTempDirectory("job").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    // points along the equator at longitude id, each feature carrying its id
+    private File writeInput(int count) throws Exception {
+        File input = new File(directory, "input.shp");
+        SimpleFeatureType type = DataUtilities.createType("input", "the_geom:Point:srid=4326,id:Integer");
+        ShapefileDataStore store = new ShapefileDataStore(input.toURI().toURL());
+        try {
+            store.createSchema(type);
+            GeometryFactory factory = new GeometryFactory();
+            try (FeatureWriter<SimpleFeatureType, SimpleFeature> writer =
+                         store.getFeatureWriterAppend(store.getTypeNames()[0], Transaction.AUTO_COMMIT)) {
+                for (int id = 1; id <= count; id++) {
+                    SimpleFeature feature = writer.next();
+                    feature.setDefaultGeometry(factory.createPoint(new Coordinate(id, 0)));
+                    feature.setAttribute("id", id);
+                    writer.write();
+                }
+            }
+        } finally {
+            store.dispose();
+        }
+        return input;
+    }
+
+    // sets the deleted flag, the first byte of a .dbf record, of the given 1-based row
+    private static void deleteRow(File dbf, int row) throws Exception {
+        try (RandomAccessFile file = new RandomAccessFile(dbf, "rw")) {
+            file.seek(8);
+            int headerLength = Short.reverseBytes(file.readShort()) & 0xFFFF;
+            int recordLength = Short.reverseBytes(file.readShort()) & 0xFFFF;
+            file.seek(headerLength + (long) (row - 1) * recordLength);
+            file.write('*');
+        }
+    }
+
+    @Test
+    public void deletedRowsKeepAttributesAlignedWithGeometries() throws Exception {
+        File input = writeInput(5);
+        deleteRow(new File(directory, "input.dbf"), 2);
+        deleteRow(new File(directory, "input.dbf"), 4);
+        File output = new File(directory, "output.shp");
+
+        ShapefileBufferJob.Result result = ShapefileBufferJob.run(input, output, 1000, 2, 2);
+        assertEquals(3, result.written);
+        assertEquals(3, result.vertices);
+        assertTrue(result.failures.isEmpty());
+
+        List<Integer> ids = new ArrayList<>();
+        ShapefileDataStore store = new ShapefileDataStore(output.toURI().toURL());
+        try (SimpleFeatureIterator features = store.getFeatureSource().getFeatures().features()) {
+            while (features.hasNext()) {
+                SimpleFeature feature = features.next();
+                int id = ((Number) feature.getAttribute("id")).intValue();
+                ids.add(id);
+                Geometry buffer = (Geometry) feature.getDefaultGeometry();
+                assertEquals(id, buffer.getCentroid().getX(), 1e-3);
+                assertEquals(0, buffer.getCentroid().getY(), 1e-3);
+            }
+        } finally {
+            store.dispose();
+        }
+        assertEquals(Arrays.asList(1, 3, 5), ids);
+    }
+}
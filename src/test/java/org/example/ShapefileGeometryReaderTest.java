@@ -0,0 +1,213 @@
+package org.example;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ShapefileGeometryReaderTest {
+    private static final double[] SQUARE_CLOCKWISE = {0, 0, 0, 4, 4, 4, 4, 0, 0, 0};
+    private static final double[] HOLE_COUNTERCLOCKWISE = {1, 1, 2, 1, 2, 2, 1, 1};
+    private static final double[] TRIANGLE_COUNTERCLOCKWISE = {10, 10, 11, 10, 10, 11, 10, 10};
+
+    private File shp;
+
+    @Before
+    public void writeFixture() throws IOException {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        int number = 1;
+        // 1: two line parts, the first with a repeated vertex
+        record(records, number++, poly(3, 0, new double[]{0, 0, 1, 0, 1, 0, 2, 1}, new double[]{5, 5, 6, 6}));
+        // 2: clockwise shell with a counter-clockwise hole
+        record(records, number++, poly(5, 0, SQUARE_CLOCKWISE, HOLE_COUNTERCLOCKWISE));
+        // 3: polygon written with the wrong orientation only
+        record(records, number++, poly(5, 0, TRIANGLE_COUNTERCLOCKWISE));
+        // 4: null shape
+        record(records, number++, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0).array());
+        // 5: PolygonZ with Z and M arrays after the points
+        record(records, number++, poly(15, 2, SQUARE_CLOCKWISE, HOLE_COUNTERCLOCKWISE));
+        // 6: PolyLineM with an M array after the points
+        record(records, number++, poly(23, 1, new double[]{0, 0, 3, 4}));
+        // 7: PointZ, x y z m
+        record(records, number++, ByteBuffer.allocate(36).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(11).putDouble(7).putDouble(8).putDouble(100).putDouble(0).array());
+        // 8: MultiPoint, not supported by the buffer
+        record(records, number++, ByteBuffer.allocate(40 + 16).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(8).putDouble(0).putDouble(0).putDouble(1).putDouble(1).putInt(1).putDouble(1).putDouble(1).array());
+
+        byte[] body = records.toByteArray();
+        ByteBuffer header = ByteBuffer.allocate(100);
+        header.order(ByteOrder.BIG_ENDIAN).putInt(0, 9994).putInt(24, (100 + body.length) / 2);
+        header.order(ByteOrder.LITTLE_ENDIAN).putInt(28, 1000).putInt(32, 5);
+
+        shp = File.createTempFile("reader", ".shp");
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(header.array());
+        file.write(body);
+        Files.write(shp.toPath(), file.toByteArray());
+    }
+
+    @After
+    public void deleteFixture() {
+        shp.delete();
+    }
+
+    // record header with the big endian record number and content length in 16-bit words
+    private static void record(ByteArrayOutputStream out, int number, byte[] content) throws IOException {
+        out.write(ByteBuffer.allocate(8).order(ByteOrder.BIG_ENDIAN).putInt(number).putInt(content.length / 2).array());
+        out.write(content);
+    }
+
+    // poly record content; measures is the number of extra per-point arrays (Z, M) written after the points
+    private static byte[] poly(int type, int measures, double[]... parts) {
+        int numPoints = 0;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (double[] part : parts) {
+            numPoints += part.length / 2;
+            for (int i = 0; i < part.length; i += 2) {
+                minX = Math.min(minX, part[i]);
+                maxX = Math.max(maxX, part[i]);
+                minY = Math.min(minY, part[i + 1]);
+                maxY = Math.max(maxY, part[i + 1]);
+            }
+        }
+        ByteBuffer content = ByteBuffer.allocate(44 + 4 * parts.length + 16 * numPoints + measures * (16 + 8 * numPoints))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        content.putInt(type).putDouble(minX).putDouble(minY).putDouble(maxX).putDouble(maxY);
+        content.putInt(parts.length).putInt(numPoints);
+        int start = 0;
+        for (double[] part : parts) {
+            content.putInt(start);
+            start += part.length / 2;
+        }
+        for (double[] part : parts) {
+            for (double value : part) {
+                content.putDouble(value);
+            }
+        }
+        for (int m = 0; m < measures; m++) {
+            content.putDouble(-1).putDouble(1);
+            for (int i = 0; i < numPoints; i++) {
+                content.putDouble(Double.NaN);
+            }
+        }
+        return content.array();
+    }
+
+    private List<ShapefileGeometryReader.Record> readAll(long windowSize) throws IOException {
+        List<ShapefileGeometryReader.Record> records = new ArrayList<>();
+        try (ShapefileGeometryReader reader = new ShapefileGeometryReader(shp, windowSize)) {
+            assertEquals(5, reader.getShapeType());
+            while (reader.hasNext()) {
+                records.add(reader.next());
+            }
+        }
+        return records;
+    }
+
+    @Test
+    public void decodesEveryRecordType() throws IOException {
+        List<ShapefileGeometryReader.Record> records = readAll(ShapefileGeometryReader.WINDOW_SIZE);
+        assertEquals(8, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i + 1, records.get(i).number);
+        }
+
+        ShapefileGeometryReader.Record lines = records.get(0);
+        assertEquals(ProjectedGeometry.Type.LINES, lines.type);
+        assertEquals(2, lines.parts.size());
+        assertArrayEquals(new double[]{0, 0, 1, 0, 2, 1}, lines.parts.get(0), 0);
+        assertArrayEquals(new double[]{5, 5, 6, 6}, lines.parts.get(1), 0);
+        assertEquals(3, lines.centerX, 0);
+        assertEquals(3, lines.centerY, 0);
+
+        ShapefileGeometryReader.Record polygon = records.get(1);
+        assertEquals(ProjectedGeometry.Type.SHELLS, polygon.type);
+        assertEquals(1, polygon.parts.size());
+        assertArrayEquals(new double[]{0, 0, 0, 4, 4, 4, 4, 0}, polygon.parts.get(0), 0);
+        assertEquals(2, polygon.centerX, 0);
+
+        ShapefileGeometryReader.Record wrongOrientation = records.get(2);
+        assertEquals(1, wrongOrientation.parts.size());
+        assertArrayEquals(new double[]{10, 10, 11, 10, 10, 11}, wrongOrientation.parts.get(0), 0);
+
+        assertTrue(records.get(3).isNull());
+        assertTrue(records.get(3).parts.isEmpty());
+
+        ShapefileGeometryReader.Record polygonZ = records.get(4);
+        assertEquals(ProjectedGeometry.Type.SHELLS, polygonZ.type);
+        assertEquals(1, polygonZ.parts.size());
+        assertArrayEquals(polygon.parts.get(0), polygonZ.parts.get(0), 0);
+
+        ShapefileGeometryReader.Record lineM = records.get(5);
+        assertEquals(ProjectedGeometry.Type.LINES, lineM.type);
+        assertArrayEquals(new double[]{0, 0, 3, 4}, lineM.parts.get(0), 0);
+
+        ShapefileGeometryReader.Record pointZ = records.get(6);
+        assertEquals(ProjectedGeometry.Type.POINT, pointZ.type);
+        assertArrayEquals(new double[]{7, 8}, pointZ.parts.get(0), 0);
+
+        assertTrue(records.get(7).isNull());
+        assertNull(records.get(7).type);
+    }
+
+    @Test
+    public void smallWindowsGiveTheSameRecords() throws IOException {
+        List<ShapefileGeometryReader.Record> expected = readAll(ShapefileGeometryReader.WINDOW_SIZE);
+        // windows smaller than one record, around one record, and cutting records at arbitrary offsets
+        for (long windowSize : new long[]{8, 37, 100, 150, 333}) {
+            List<ShapefileGeometryReader.Record> records = readAll(windowSize);
+            assertEquals(expected.size(), records.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).number, records.get(i).number);
+                assertEquals(expected.get(i).type, records.get(i).type);
+                assertEquals(expected.get(i).parts.size(), records.get(i).parts.size());
+                for (int p = 0; p < expected.get(i).parts.size(); p++) {
+                    assertArrayEquals(expected.get(i).parts.get(p), records.get(i).parts.get(p), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void truncatedRecordIsReported() throws IOException {
+        byte[] bytes = Files.readAllBytes(shp.toPath());
+        Files.write(shp.toPath(), Arrays.copyOf(bytes, bytes.length - 3));
+        try (ShapefileGeometryReader reader = new ShapefileGeometryReader(shp)) {
+            for (int i = 0; i < 7; i++) {
+                reader.next();
+            }
+            assertTrue(reader.hasNext());
+            try {
+                reader.next();
+                fail("truncated record was read");
+            } catch (IOException expected) {
+                assertTrue(expected.getMessage().contains("record 8"));
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void wrongFileCodeIsRejected() throws IOException {
+        byte[] bytes = Files.readAllBytes(shp.toPath());
+        bytes[3] = 0;
+        Files.write(shp.toPath(), bytes);
+        new ShapefileGeometryReader(shp).close();
+    }
+}
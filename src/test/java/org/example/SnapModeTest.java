@@ -0,0 +1,84 @@
+package org.example;
+
+import org.junit.After;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SnapModeTest {
+    private final GeometryFactory factory = new GeometryFactory();
+
+    @After
+    public void reset() {
+        BufferFactory.setSnapMode(SnapMode.OFF);
+        BufferFactory.setSnapPrecision(new PrecisionModel(1000));
+        BufferFactory.resetSnappedFeatureCount();
+    }
+
+    private static void assertOnGrid(Geometry geometry, double scale) {
+        for (Coordinate c : geometry.getCoordinates()) {
+            assertEquals(Math.round(c.x * scale) / scale, c.x, 1e-9);
+            assertEquals(Math.round(c.y * scale) / scale, c.y, 1e-9);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void floatingSnapPrecisionIsRejected() {
+        BufferFactory.setSnapPrecision(new PrecisionModel());
+    }
+
+    @Test
+    public void precisionUnionIsSnapRounded() {
+        List<Polygon> pieces = new ArrayList<>();
+        CircleTemplate circle = CircleTemplate.of(16);
+        for (int i = 0; i < 200; i++) {
+            pieces.add(factory.createPolygon(circle.circle(i * 0.3333, Math.sin(i) * 2.0001, 1)));
+        }
+        PrecisionModel precision = new PrecisionModel(100);
+        Geometry floating = PieceUnion.union(pieces, factory, UnionMode.SEQUENTIAL_TREE);
+        for (UnionMode mode : UnionMode.values()) {
+            Geometry snapped = PieceUnion.union(pieces, factory, mode, precision);
+            assertTrue(snapped.isValid());
+            assertOnGrid(snapped, 100);
+            assertEquals(floating.getArea(), snapped.getArea(), floating.getArea() * 1e-3);
+        }
+    }
+
+    @Test
+    public void alwaysSnapsAndCountsEveryFeature() {
+        BufferFactory.setSnapMode(SnapMode.ALWAYS);
+        BufferFactory.setSnapPrecision(new PrecisionModel(10));
+        BufferFactory.resetSnappedFeatureCount();
+        for (long seed = 1; seed <= 3; seed++) {
+            LineString line = TestGeometries.walk(300, seed);
+            Geometry snapped = BufferFactory.buffer(line, 25, BufferEngine.SEGMENT_UNION);
+            assertTrue(snapped.isValid());
+            assertOnGrid(snapped, 10);
+            Geometry reference = line.buffer(25, BufferFactory.circleSegments(25) / 4);
+            assertEquals(reference.getArea(), snapped.getArea(), reference.getArea() * 0.01);
+        }
+        assertEquals(3, BufferFactory.getSnappedFeatureCount());
+    }
+
+    @Test
+    public void offAndFallbackKeepFloatingPrecisionWhenTheOverlaySucceeds() {
+        LineString line = TestGeometries.walk(300, 4);
+        BufferFactory.setSnapMode(SnapMode.OFF);
+        Geometry floating = BufferFactory.buffer(line, 25, BufferEngine.SEGMENT_UNION);
+        BufferFactory.setSnapMode(SnapMode.FALLBACK);
+        BufferFactory.resetSnappedFeatureCount();
+        Geometry fallback = BufferFactory.buffer(line, 25, BufferEngine.SEGMENT_UNION);
+        assertEquals(0, BufferFactory.getSnappedFeatureCount());
+        assertTrue(floating.equalsExact(fallback));
+    }
+}
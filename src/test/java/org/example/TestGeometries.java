@@ -0,0 +1,34 @@
+package org.example;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+
+import java.util.Random;
+
+// random inputs shared by the buffer and union tests
+final class TestGeometries {
+    static final GeometryFactory FACTORY = new GeometryFactory();
+
+    private TestGeometries() {
+    }
+
+    // random walk of 10 unit steps with uniformly random headings
+    static LineString walk(int n, long seed) {
+        return walk(n, 10, false, seed);
+    }
+
+    // random walk with uniformly random headings, or a smooth one when the heading only drifts
+    static LineString walk(int n, double step, boolean smooth, long seed) {
+        Random random = new Random(seed);
+        Coordinate[] coords = new Coordinate[n];
+        double x = 0, y = 0, heading = 0;
+        for (int i = 0; i < n; i++) {
+            coords[i] = new Coordinate(x, y);
+            heading = smooth ? heading + random.nextGaussian() * 0.05 : random.nextDouble() * 2 * Math.PI;
+            x += step * Math.cos(heading);
+            y += step * Math.sin(heading);
+        }
+        return FACTORY.createLineString(coords);
+    }
+}
@@ -0,0 +1,117 @@
+package org.example;
+
+import org.junit.After;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineSegment;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VertexSimplifierTest {
+    private final GeometryFactory factory = new GeometryFactory();
+
+    @After
+    public void resetRatio() {
+        BufferFactory.setSimplifyRatio(0);
+    }
+
+    // n vertices on a circle, packed without the closing vertex
+    private static double[] ring(int n, double radius) {
+        double[] vertices = new double[2 * n];
+        for (int i = 0; i < n; i++) {
+            vertices[2 * i] = radius * Math.cos(2 * Math.PI * i / n);
+            vertices[2 * i + 1] = radius * Math.sin(2 * Math.PI * i / n);
+        }
+        return vertices;
+    }
+
+    private Coordinate[] closedRing(int n, double radius) {
+        double[] vertices = ring(n, radius);
+        Coordinate[] coords = new Coordinate[n + 1];
+        for (int i = 0; i < n; i++) {
+            coords[i] = new Coordinate(vertices[2 * i], vertices[2 * i + 1]);
+        }
+        coords[n] = coords[0];
+        return coords;
+    }
+
+    private static double distanceToLine(double[] line, double x, double y) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i + 1 < line.length / 2; i++) {
+            LineSegment segment = new LineSegment(line[2 * i], line[2 * i + 1], line[2 * i + 2], line[2 * i + 3]);
+            min = Math.min(min, segment.distance(new Coordinate(x, y)));
+        }
+        return min;
+    }
+
+    private static void assertFinite(Geometry geometry) {
+        for (Coordinate c : geometry.getCoordinates()) {
+            assertTrue(Double.isFinite(c.x) && Double.isFinite(c.y));
+        }
+    }
+
+    @Test
+    public void droppedVerticesStayWithinTolerance() {
+        Random random = new Random(3);
+        double[] line = new double[2 * 500];
+        for (int i = 0; i < 500; i++) {
+            line[2 * i] = i;
+            line[2 * i + 1] = random.nextGaussian() * 2;
+        }
+        double[] simplified = VertexSimplifier.simplify(line, 3, false);
+        assertTrue(simplified.length < line.length);
+        assertEquals(line[0], simplified[0], 0);
+        assertEquals(line[line.length - 2], simplified[simplified.length - 2], 0);
+        for (int i = 0; i < 500; i++) {
+            assertTrue(distanceToLine(simplified, line[2 * i], line[2 * i + 1]) <= 3);
+        }
+    }
+
+    @Test
+    public void smallRingCollapsesToFarthestVertex() {
+        double[] simplified = VertexSimplifier.simplify(ring(24, 3), 10, true);
+        assertArrayEquals(new double[]{3, 0, -3, ring(24, 3)[25]}, simplified, 0);
+    }
+
+    @Test
+    public void closedLineKeepsFarthestVertex() {
+        double[] ring = ring(24, 3);
+        double[] line = new double[ring.length + 2];
+        System.arraycopy(ring, 0, line, 0, ring.length);
+        line[ring.length] = ring[0];
+        line[ring.length + 1] = ring[1];
+        double[] simplified = VertexSimplifier.simplify(line, 10, false);
+        assertArrayEquals(new double[]{3, 0, -3, ring[25], 3, 0}, simplified, 0);
+    }
+
+    @Test
+    public void repeatedVerticesAreDropped() {
+        assertArrayEquals(new double[]{1, 1}, VertexSimplifier.simplify(new double[]{1, 1, 1, 1, 1, 1}, 10, false), 0);
+        assertArrayEquals(new double[]{1, 1}, VertexSimplifier.simplify(new double[]{1, 1, 1, 1, 1, 1}, 10, true), 0);
+    }
+
+    @Test(timeout = 10000)
+    public void collapsedRingStillBuffers() {
+        Geometry[] inputs = {
+                factory.createPolygon(closedRing(24, 3)),
+                factory.createLineString(closedRing(24, 3))
+        };
+        for (Geometry input : inputs) {
+            for (BufferEngine engine : BufferEngine.values()) {
+                BufferFactory.setSimplifyRatio(0);
+                Geometry reference = BufferFactory.buffer(input, 1000, engine);
+                BufferFactory.setSimplifyRatio(0.01);
+                Geometry buffer = BufferFactory.buffer(input, 1000, engine);
+                assertFinite(buffer);
+                assertTrue(buffer.isValid());
+                assertEquals(reference.getArea(), buffer.getArea(), reference.getArea() * 0.01);
+            }
+        }
+    }
+}